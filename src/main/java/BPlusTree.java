@@ -2,16 +2,22 @@
 // BPTree.java
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
 import java.io.Console;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
@@ -24,31 +30,71 @@ import java.io.StringWriter;
 
 //  Implements a SortedMap as a B+ tree.
  
-public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
+public class BPlusTree<K, V> extends AbstractMap<K,V> implements NavigableMap<K,V>
 {
 	
 	private static Comparator mDefaultComp = new DefaultComparator();
 	
+	private static final double DEFAULT_FILL_FACTOR = 1.0;
+	
+	// Byte budget of an index tree node; IntBPlusTreePageBenchmark measures index trees of other page sizes.
+	private static final int INDEX_PAGE_SIZE = 4096;
+	
+	// The index of PAPER/<name> on HDFS is kept next to it, in PAPER/<name>.idx.
+	private static final String INDEX_SIDECAR_SUFFIX = ".idx";
+	
+	// Page size of the data file store. Rows are read by byte range, so it only matters to stores that cache pages.
+	private static final int DATA_PAGE_SIZE = 64 * 1024;
+	
+	// Subtrees with at most this many keys are serialized by a single task in createIndexParallel().
+	// Every task's output is kept until all of them are done, so the parallel emission holds the whole data
+	// file on the heap, as chars, on top of the tree; the chunk size only bounds how finely it is split.
+	private static final int EMIT_CHUNK_ENTRIES = 4096;
+	
 	private Comparator mComp;
 	private int mOrder;
 	private int mLeafOrder;
+	private LeafKeyFormat mLeafKeyFormat;
 	
 	private Node mRootNode;
 	private int mSize = 0;
 	
 	private LeafNode mFirstLeaf;
+	private LeafNode mLastLeaf;
 	
 	private int mModCount = Integer.MIN_VALUE;
-	private Set<Entry<K,V>> mEsInstance = (new SubMap()).entrySet();
 	
-	private BPlusTree<Integer, String> mIndexBplusTree;
+	// Nodes created before the current epoch may be shared with a snapshot and are copied before being changed.
+	private int mEpoch = 0;
+	private SubMap mAllMap = new SubMap();
+	private Set<Entry<K,V>> mEsInstance = mAllMap.entrySet();
+	
+	private IntBPlusTree<IndexRecord> mIndexBplusTree;
+	// Holds the record lookupIndex found, so a lookup creates no objects.
+	private IndexRecordSlots.Holder mIndexRecord = new IndexRecordSlots.Holder();
 	private String mDataFileName = "datafile.dat";
+	// Id of mDataFileName in the index records.
+	private int mDataFileId = 0;
+	// Index file searched in place by searchData while there is no mIndexBplusTree.
+	private PagedIndex mPagedIndex;
+	
+	// 0 for a dense index, with a record for every key; else the bytes of data file after which createIndex
+	// starts a new block of a sparse index, with a record for the first key of every block.
+	private int mSparseBlockBytes = 0;
+	// The block of a sparse index being written: its first key and where its rows start and end.
+	private int mBlockKey;
+	private long mBlockOffset;
+	private long mBlockEnd = -1;
 	
 	private Configuration mHadoopConf;
 	private FileSystem mHDFS;
 	private Path mHadoopDataFileNamePath;  
 	
-	private int mOffset = 0;
+	// Where searchData reads the data file from; opened on first use.
+	private PageStore mDataStore;
+	
+	// Byte offset in the data file of the next rows written.
+	private long mOffset = 0;
 	
 //	  Creates a new BPTree of order and leaf order 3 and assumes that all keys implement Comparable.
 	BPlusTree()
@@ -73,6 +119,15 @@ public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
 		this(mDefaultComp, order, leafOrder);
 	}
 	
+//	  Creates a new BPTree whose leaves store keys in the specified format, and assumes that all keys implement Comparable.
+//	  @param order Order of internal guide nodes.
+//	  @param leafOrder Order of leaf nodes.
+//	  @param leafKeyFormat INT_DELTA for Integer keys, STRING_PREFIX for String keys, or PLAIN.
+	BPlusTree(int order, int leafOrder, LeafKeyFormat leafKeyFormat) throws IllegalArgumentException
+	{
+		this(mDefaultComp, order, leafOrder, leafKeyFormat);
+	}
+	
 //	  Creates a new BPTree.
 //	  @param c Comparator to use to sort objects.
 //	  @param order Order of internal guide nodes.
@@ -80,11 +135,27 @@ public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
 //	  @throws IllegalArgumentException thrown if order < 3 or leafOrder < 1.	 
 	BPlusTree(Comparator c, int order, int leafOrder) throws IllegalArgumentException
 	{
+		this(c, order, leafOrder, LeafKeyFormat.PLAIN);
+	}
+	
+//	  Creates a new BPTree.
+//	  @param c Comparator to use to sort objects.
+//	  @param order Order of internal guide nodes.
+//	  @param leafOrder Order of leaf nodes.
+//	  @param leafKeyFormat How leaves store their keys.
+//	  @throws IllegalArgumentException thrown if a compressed leafKeyFormat is combined with a Comparator.
+	private BPlusTree(Comparator c, int order, int leafOrder, LeafKeyFormat leafKeyFormat) throws IllegalArgumentException
+	{
+		// Compressed leaves search their keys in natural order.
+		if(leafKeyFormat != LeafKeyFormat.PLAIN && !(c instanceof BPlusTree.DefaultComparator))
+			throw new IllegalArgumentException();
+		
 		this.mComp = c;
 		this.mOrder = order;
 		this.mLeafOrder = leafOrder;
+		this.mLeafKeyFormat = leafKeyFormat;
 		
-		mRootNode = mFirstLeaf = new LeafNode();
+		mRootNode = mFirstLeaf = mLastLeaf = new LeafNode();
 	}
 
 //	  Returns the first key currently in this BPTree.
@@ -102,11 +173,7 @@ public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
 		if(mSize == 0)
 			throw new NoSuchElementException();
 		
-		LeafNode cur = mFirstLeaf;
-		while(cur.next != null)
-			cur = cur.next;
-		
-		return cur.keys.get(cur.keys.size() - 1);
+		return mLastLeaf.keys.get(mLastLeaf.keys.size() - 1);
 	}
 	
 //	  Returns the comparator associated with this BPTree, or null if it uses its keys' natural ordering.
@@ -127,7 +194,7 @@ public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
 //	  Removes all mappings from this BPTree.
 	public void clear()
 	{
-		mRootNode = mFirstLeaf = new LeafNode();
+		mRootNode = mFirstLeaf = mLastLeaf = new LeafNode();
 		mSize = 0;
 		mModCount++;
 	}
@@ -147,22 +214,29 @@ public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
 		return findLeafIndex(ln, key) != -1;
 	}
 
-//	  Associates the specified value with the specified key in this map.	 
+//	  Associates the specified value with the specified key in this map.
+//	  The key keeps its earlier values too; call append() to get at all of them.
+//	  @return The value most recently mapped to the key before this one, or null if the key is new.
 	public V put(K key, V value)
+	{
+		List<V> valueList = append(key, value);
+		if(valueList == null)
+			return null;
+		else
+			return valueList.get(valueList.size() - 2);
+	}
+	
+//	  Appends the specified value to the values mapped to the specified key, descending the tree only once.
+//	  @return A read-only view of the value list the value was appended to if the key was already present, or
+//	  null if the key is new.
+	public List<V> append(K key, V value)
 	{
 		if(key == null)
 			throw new NullPointerException();
 		
-		// Increment size?
-		if(!containsKey(key))
-			mSize++;
-		
-		// Get previous value at the key.
-		//V ret = get(key);
-		V ret = (V)"1";
-		
 		// Insert the new key/value into the tree.
-		Node newNode = mRootNode.put(key, value);
+		Upsert upsert = new Upsert();
+		Node newNode = writableRoot().put(key, value, upsert);
 		
 		// Create new root?
 		if(newNode != null)
@@ -171,15 +245,19 @@ public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
 			newRoot.keys.add(newNode.keys.get(0));
 			newRoot.children.add(mRootNode);
 			newRoot.children.add(newNode);
+			newRoot.entries = mRootNode.entryCount() + newNode.entryCount();
 			
 			mRootNode = newRoot;
 		}
+		
+		// Increment size?
+		if(upsert.newKey)
+			mSize++;
 
 		// Increment mod count.
 		mModCount++;
 		
-		// Return the previous value.
-		return ret;
+		return upsert.newKey ? null : Collections.unmodifiableList(upsert.valueList);
 	}
 	
 	public V get(Object key)
@@ -202,14 +280,160 @@ public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
 			return (V)ln.values.get(index).toString();
 	}
 	
-//	  Removes the specified key from this map.
-
+//	  Removes the specified key, and every value mapped to it, from this map.
+//	  @return The removed values, rendered the same way get() renders them, or null if the key was not present.
+	public V remove(Object key)
+	{
+		if(key == null)
+			throw new NullPointerException();
+		
+		PostingList<V> removed = writableRoot().remove(key);
+		if(removed == null)
+			return null;
+		
+		// Shrink the tree while the root guide node is down to a single child.
+		while(mRootNode instanceof BPlusTree.GuideNode && ((GuideNode)mRootNode).children.size() == 1)
+		{
+			mRootNode = ((GuideNode)mRootNode).children.get(0);
+			if(mRootNode instanceof BPlusTree.GuideNode)
+				writableRoot().keys.set(0, null);
+		}
+		
+		mSize--;
+		mModCount++;
+		
+		return (V)removed.toString();
+	}
+	
+//	  Returns an immutable point-in-time view of this BPTree.
+//	  The snapshot shares every node with this BPTree; nodes are copied, along the path from the root, only when
+//	  this BPTree changes them afterwards. Iterating a snapshot never throws ConcurrentModificationException,
+//	  and it may be read from another thread while this BPTree is being modified, once it has been handed over safely.
+	public Snapshot snapshot()
+	{
+		mEpoch++;
+		return new Snapshot(mRootNode, mSize, null, null);
+	}
+	
+//	  Returns the root node, first replacing it with a private copy if a snapshot shares it.
+	private Node writableRoot()
+	{
+		if(mRootNode.epoch != mEpoch)
+			mRootNode = mRootNode.copy();
+		
+		return mRootNode;
+	}
+	
 //	  Returns a set view of the entries mapped in this BPTree.	 
 	public Set<Entry<K, V>> entrySet()
 	{
 		return mEsInstance;
 	}
 	
+//	  Returns a loader which builds this BPTree bottom-up from entries added in ascending key order.
+//	  @param fillFactor Fraction of each node's order to fill, in (0, 1].
+//	  @throws IllegalArgumentException thrown if fillFactor is not in (0, 1].
+	public BulkLoader bulkLoader(double fillFactor) throws IllegalArgumentException
+	{
+		return new BulkLoader(fillFactor);
+	}
+	
+//	  Loads the specified entries, which should be sorted by key, into this BPTree.
+//	  @param fillFactor Fraction of each node's order to fill, in (0, 1].
+	public void bulkLoad(Iterator<? extends Entry<? extends K, ? extends V>> entries, double fillFactor)
+	{
+		BulkLoader loader = new BulkLoader(fillFactor);
+		while(entries.hasNext())
+		{
+			Entry<? extends K, ? extends V> e = entries.next();
+			loader.add(e.getKey(), e.getValue());
+		}
+		loader.finish();
+	}
+	
+//	  Returns the number of keys between lo (inclusive) and hi (exclusive); a null bound is unbounded.
+//	  @throws IllegalArgumentException thrown if lo is greater than hi.
+	public int countRange(K lo, K hi) throws IllegalArgumentException
+	{
+		if(lo != null && hi != null && mComp.compare(lo, hi) > 0)
+			throw new IllegalArgumentException();
+		
+		return countRange(mRootNode, mSize, lo, hi);
+	}
+	
+//	  Returns the number of keys in this BPTree which are less than the specified key.
+	public int rank(K key)
+	{
+		return rank(mRootNode, key);
+	}
+	
+//	  Returns the key with the specified rank, counting from 0.
+//	  @throws IndexOutOfBoundsException thrown if index < 0 or index >= size().
+	public K select(int index) throws IndexOutOfBoundsException
+	{
+		if(index < 0 || index >= mSize)
+			throw new IndexOutOfBoundsException(Integer.toString(index));
+		
+		return select(mRootNode, index);
+	}
+	
+//	  Returns the number of keys below root between lo (inclusive) and hi (exclusive).
+	private int countRange(Node root, int size, Object lo, Object hi)
+	{
+		int from = lo == null ? 0 : rank(root, lo);
+		int to = hi == null ? size : rank(root, hi);
+		
+		return Math.max(0, to - from);
+	}
+	
+//	  Returns the number of keys below root which are less than the specified key.
+	private int rank(Node root, Object key)
+	{
+		return rank(root, key, false);
+	}
+	
+//	  Returns the number of keys below root which are less than (or, if inclusive, at most) the specified key.
+	private int rank(Node root, Object key, boolean inclusive)
+	{
+		int rank = 0;
+		
+		// Add up the subtrees left of the path to the key.
+		Node cur = root;
+		while(cur instanceof BPlusTree.GuideNode)
+		{
+			GuideNode gn = (GuideNode)cur;
+			int index = findGuideIndex(gn, key);
+			for(int i = 0; i < index; i++)
+				rank += gn.children.get(i).entryCount();
+			cur = gn.children.get(index);
+		}
+		
+		int index = searchLeaf((LeafNode)cur, key);
+		if(index < 0)
+			return rank - (index + 1);
+		else
+			return rank + (inclusive ? index + 1 : index);
+	}
+	
+//	  Returns the key below root with the specified rank, which must be in range.
+	private K select(Node root, int index)
+	{
+		Node cur = root;
+		while(cur instanceof BPlusTree.GuideNode)
+		{
+			GuideNode gn = (GuideNode)cur;
+			int i = 0;
+			while(index >= gn.children.get(i).entryCount())
+			{
+				index -= gn.children.get(i).entryCount();
+				i++;
+			}
+			cur = gn.children.get(i);
+		}
+		
+		return cur.keys.get(index);
+	}
+	
 //	  Returns a map representing a sub-range of the keys stored in this BPTree.
 	public SortedMap<K, V> subMap(K arg0, K arg1)
 	{
@@ -228,689 +452,2330 @@ public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
 		return subMap(arg0, null);
 	}
 	
+//	  Returns a map representing a sub-range of the keys stored in this BPTree.
+	public NavigableMap<K,V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive)
+	{
+		return new SubMap(fromKey, fromInclusive, toKey, toInclusive, false);
+	}
 	
-//	  Returns the index to follow in a guide node for the specified key.
-	private int findGuideIndex(GuideNode node, Object key)
+//	  Returns a map representing a sub-range of the keys stored in this BPTree.
+	public NavigableMap<K,V> headMap(K toKey, boolean inclusive)
 	{
-		for(int i = 1; i < node.keys.size(); i++)
-		{
-			if(mComp.compare(key, node.keys.get(i)) < 0)
-				return i - 1;
-		}
-		
-		return node.keys.size() - 1;
+		return new SubMap(null, false, toKey, inclusive, false);
 	}
 	
-//	  Returns the index to follow in a guide node for the specified key.
-	private int findLeafIndex(LeafNode node, Object key)
+//	  Returns a map representing a sub-range of the keys stored in this BPTree.
+	public NavigableMap<K,V> tailMap(K fromKey, boolean inclusive)
+	{
+		return new SubMap(fromKey, inclusive, null, false, false);
+	}
+	
+//	  Returns a view of this BPTree in descending key order. Its iterators walk the leaves along their prev links,
+//	  so reading the last few entries does not touch the rest of the tree.
+	public NavigableMap<K,V> descendingMap()
+	{
+		return mAllMap.descendingMap();
+	}
+	
+	public NavigableSet<K> navigableKeySet()
+	{
+		return mAllMap.navigableKeySet();
+	}
+	
+	public NavigableSet<K> descendingKeySet()
+	{
+		return mAllMap.descendingKeySet();
+	}
+	
+	public Entry<K,V> firstEntry()
+	{
+		return mAllMap.firstEntry();
+	}
+	
+	public Entry<K,V> lastEntry()
+	{
+		return mAllMap.lastEntry();
+	}
+	
+	public Entry<K,V> pollFirstEntry()
+	{
+		return mAllMap.pollFirstEntry();
+	}
+	
+	public Entry<K,V> pollLastEntry()
+	{
+		return mAllMap.pollLastEntry();
+	}
+	
+//	  Returns the entry with the greatest key strictly less than the specified key, or null if there is none.
+	public Entry<K,V> lowerEntry(K key)
+	{
+		return mAllMap.lowerEntry(key);
+	}
+	
+//	  Returns the entry with the greatest key less than or equal to the specified key, or null if there is none.
+	public Entry<K,V> floorEntry(K key)
+	{
+		return mAllMap.floorEntry(key);
+	}
+	
+//	  Returns the entry with the least key greater than or equal to the specified key, or null if there is none.
+	public Entry<K,V> ceilingEntry(K key)
+	{
+		return mAllMap.ceilingEntry(key);
+	}
+	
+//	  Returns the entry with the least key strictly greater than the specified key, or null if there is none.
+	public Entry<K,V> higherEntry(K key)
+	{
+		return mAllMap.higherEntry(key);
+	}
+	
+	public K lowerKey(K key)
+	{
+		return mAllMap.lowerKey(key);
+	}
+	
+	public K floorKey(K key)
+	{
+		return mAllMap.floorKey(key);
+	}
+	
+	public K ceilingKey(K key)
+	{
+		return mAllMap.ceilingKey(key);
+	}
+	
+	public K higherKey(K key)
 	{
-		for(int i = 0; i < node.keys.size(); i++)
+		return mAllMap.higherKey(key);
+	}
+	
+//	  Returns the leaf node which holds, or would hold, the specified key.
+	private LeafNode findLeaf(Object key)
+	{
+		Node cur = mRootNode;
+		while(cur instanceof BPlusTree.GuideNode)
 		{
-			if(mComp.compare(key, node.keys.get(i)) == 0)
-				return i;
+			GuideNode gn = (GuideNode)cur;
+			cur = gn.children.get(findGuideIndex(gn, key));
 		}
 		
-		return -1;
+		return (LeafNode)cur;
 	}
 	
-//	  Prints this BPTree to the specified StringWriter in XML format.
-	public void printXml(StringWriter out)
+//	  Returns the position of the first key, or null if this BPTree is empty.
+	private LeafPosition firstPosition()
 	{
-		Node cur = mRootNode;
-		while(cur instanceof BPlusTree.GuideNode)
+		LeafPosition p = new LeafPosition(mFirstLeaf, -1);
+		return p.forward() ? p : null;
+	}
+	
+//	  Returns the position of the last key, or null if this BPTree is empty.
+	private LeafPosition lastPosition()
+	{
+		LeafPosition p = new LeafPosition(mLastLeaf, mLastLeaf.keys.size());
+		return p.backward() ? p : null;
+	}
+	
+//	  Returns the position of the least key greater than or equal to (or, if not inclusive, greater than) the
+//	  specified key, or null if there is none.
+	private LeafPosition ceilingPosition(Object key, boolean inclusive)
+	{
+		LeafNode leaf = findLeaf(key);
+		int index = searchLeaf(leaf, key);
+		if(index < 0)
+			index = -(index + 1);
+		else if(!inclusive)
+			index++;
+		
+		// Start just before the index, so that stepping forward also moves on to the next leaf if needed.
+		LeafPosition p = new LeafPosition(leaf, index - 1);
+		return p.forward() ? p : null;
+	}
+	
+//	  Returns the position of the greatest key less than or equal to (or, if not inclusive, less than) the
+//	  specified key, or null if there is none.
+	private LeafPosition floorPosition(Object key, boolean inclusive)
+	{
+		LeafNode leaf = findLeaf(key);
+		int index = searchLeaf(leaf, key);
+		if(index < 0)
+			index = -(index + 1) - 1;
+		else if(!inclusive)
+			index--;
+		
+		LeafPosition p = new LeafPosition(leaf, index + 1);
+		return p.backward() ? p : null;
+	}
+	
+//	  The position of an entry in the leaf chain.
+	private class LeafPosition
+	{
+		public LeafNode leaf;
+		public int index;
+		
+		public LeafPosition(LeafNode leaf, int index)
 		{
-			cur = ((GuideNode)cur).children.get(0);
-		}		
-		mRootNode.printXml(out, 4);
+			this.leaf = leaf;
+			this.index = index;
+		}
+		
+		public K key()
+		{
+			return leaf.keys.get(index);
+		}
+		
+		public BPTEntry entry()
+		{
+			return new BPTEntry(leaf.keys.get(index), leaf.values.get(index), BPlusTree.this);
+		}
+		
+//		  Moves to the next entry, following the next links past the end of a leaf.
+//		  @return false if there is no next entry.
+		public boolean forward()
+		{
+			index++;
+			while(index >= leaf.keys.size())
+			{
+				if(leaf.next == null)
+					return false;
+				
+				leaf = leaf.next;
+				index = 0;
+			}
+			
+			return true;
+		}
+		
+//		  Moves to the previous entry, following the prev links past the start of a leaf.
+//		  @return false if there is no previous entry.
+		public boolean backward()
+		{
+			index--;
+			while(index < 0)
+			{
+				if(leaf.prev == null)
+					return false;
+				
+				leaf = leaf.prev;
+				index = leaf.keys.size() - 1;
+			}
+			
+			return true;
+		}
 	}
 	
-	public void createIndex(FileWriter out)
+	
+//	  Returns the position of the key below the root with the specified rank, which must be in range.
+	private LeafPosition positionAt(int index)
 	{
 		Node cur = mRootNode;
 		while(cur instanceof BPlusTree.GuideNode)
 		{
-			cur = ((GuideNode)cur).children.get(0);
+			GuideNode gn = (GuideNode)cur;
+			int i = 0;
+			while(index >= gn.children.get(i).entryCount())
+			{
+				index -= gn.children.get(i).entryCount();
+				i++;
+			}
+			cur = gn.children.get(i);
 		}
 		
-		mRootNode.createIndex(out);
+		return new LeafPosition((LeafNode)cur, index);
 	}
 	
-//	  Base class for tree nodes.
-	private abstract class Node
+//	  Returns the rank at which the keys from (inclusive) to to (exclusive) are best split in two: the subtree
+//	  boundary nearest their middle in the highest guide node with one inside the range, or -1 if they all lie in one leaf.
+	private int splitRank(int from, int to)
 	{
-		public ArrayList<K> keys;
-		
-//		  Maps the specified key to the specified value in this Node.
-//		  @return A new right node if this node was split, else null.
-		public abstract Node put(K key, V value);
+		int middle = (from + to) >>> 1;
 		
+		Node cur = mRootNode;
+		int base = 0;
+		while(cur instanceof BPlusTree.GuideNode)
+		{
+			GuideNode gn = (GuideNode)cur;
+			
+			int best = -1;
+			int start = base;
+			Node containing = null;
+			int containingBase = 0;
+			for(Node child : gn.children)
+			{
+				int end = start + child.entryCount();
+				if(start > from && start < to && (best < 0 || Math.abs(start - middle) < Math.abs(best - middle)))
+					best = start;
+				if(start <= from && to <= end)
+				{
+					containing = child;
+					containingBase = start;
+				}
+				start = end;
+			}
+			
+			if(best >= 0)
+				return best;
+			
+			// The range lies within a single child.
+			cur = containing;
+			base = containingBase;
+		}
 		
-//		  Prints this Node and all sub-Node to the specified StringWriter in XML format.
-		public abstract void printXml(StringWriter out, int indent);
-		public abstract void createIndex(FileWriter out);
+		return -1;
 	}
 	
-//	  Represents a guide node in the tree.
-	private class GuideNode extends Node
+//	  Splits the entries with ranks from (inclusive) to to (exclusive) at guide node boundaries, so that the parts
+//	  are whole subtrees. Sizes come from the subtree entry counts and are exact.
+//	  The ranks are fixed when the spliterator is created; modifying the BPTree afterwards makes traversal throw
+//	  ConcurrentModificationException.
+	private class EntrySpliterator implements Spliterator<Entry<K,V>>
 	{
-		public ArrayList<Node> children;
+		private int from;
+		private final int to;
+		private final int modCount;
 		
-		public GuideNode prev = null;
-		public GuideNode next = null;
+		// Position of the entry with rank from, or null until traversal starts.
+		private LeafPosition cur;
 		
-//		  Creates a new GuideNode of the specified order.
-		public GuideNode()
-		{			
-			keys = new ArrayList<K>(mOrder);
-			children = new ArrayList<Node>(mOrder);
-			
-			keys.add(null); // Serves as lower-bound key.
+		public EntrySpliterator(int from, int to, int modCount, LeafPosition cur)
+		{
+			this.from = from;
+			this.to = to;
+			this.modCount = modCount;
+			this.cur = cur;
 		}
 		
-//		  Maps the specified key to the specified value in this Node.
-//		  @return A new right node if this node was split, else null.
-		public Node put(K key, V value)
+		public boolean tryAdvance(Consumer<? super Entry<K,V>> action)
 		{
-			GuideNode newGuide = null;
+			if(from >= to)
+				return false;
+			if(modCount != mModCount)
+				throw new ConcurrentModificationException();
 			
-			int guideIndex = findGuideIndex(key);
+			if(cur == null)
+				cur = positionAt(from);
 			
-			// Recurse to child.
-			Node newNode = children.get(guideIndex).put(key, value);
+			Entry<K,V> entry = cur.entry();
+			from++;
+			if(from < to)
+				cur.forward();
 			
-			// Did we split?
-			if(newNode != null)
-			{
-				// Insert the new key and node at the found index.
-				keys.add(guideIndex + 1, newNode.keys.get(0));
-				children.add(guideIndex + 1, newNode);
-				
-				// Do we need to split?
-				if(keys.size() > mOrder)
-				{
-					newGuide = new GuideNode();
-					
-					newGuide.keys.clear();
-					newGuide.keys.addAll(keys.subList(keys.size() / 2, keys.size()));
-					newGuide.children.addAll(children.subList(children.size() / 2, children.size()));
-					
-					ArrayList<K> newKeys = new ArrayList<K>(mLeafOrder);
-					ArrayList<Node> newChildren = new ArrayList<Node>(mLeafOrder);
-					
-					newKeys.addAll(keys.subList(0, keys.size() / 2));
-					newChildren.addAll(children.subList(0, children.size() / 2));
-					
-					keys = newKeys;
-					children = newChildren;
-					
-					newGuide.next = next;
-					newGuide.prev = this;
-					if(next != null)
-						next.prev = newGuide;
-					next = newGuide;
-				}
-			}
-			
-			return newGuide;
+			action.accept(entry);
+			return true;
 		}
 		
-//		  Removes the specified key from this Node.
-//		  @return 0 if nothing was removed, 1 if a key was removed but Nodes did not merge,
-//		    2 if this Node merged with its left sibling, or 3 if this Node merged with its right sibling.
-		 
-//		  Returns the guide index of to use when looking for the specified key.
-		private int findGuideIndex(Object key)
+		public void forEachRemaining(Consumer<? super Entry<K,V>> action)
 		{
-			return BPlusTree.this.findGuideIndex(this, key);
+			while(tryAdvance(action))
+				;
 		}
 		
-//		  Prints this Node and all sub-Node to the specified StringWriter in XML format.
-		public void printXml(StringWriter out, int indent)
+//		  Hands the entries before a subtree boundary to a new spliterator and keeps the rest.
+		public Spliterator<Entry<K,V>> trySplit()
 		{
-			for(int i = 0; i < indent; i++)
-				out.write("  ");
-			
-			// Print first child.
-			children.get(0).printXml(out, indent + 1);
+			if(modCount != mModCount)
+				throw new ConcurrentModificationException();
 			
-			// Print each key followed by its greater child.
-			for(int i = 1; i < keys.size(); i++)
-			{
-				K key = keys.get(i);
-				Node child = children.get(i);
-				
-				// Print key.
-				for(int j = 0; j < indent + 1; j++)
-					out.write("  ");
-
-				child.printXml(out, indent + 1);
-			}
+			int split = splitRank(from, to);
+			if(split <= from || split >= to)
+				return null;
 			
-			for(int i = 0; i < indent; i++)
-				out.write("  ");
-			out.write("</guide>\n");
-			System.out.println(out.toString());
+			EntrySpliterator prefix = new EntrySpliterator(from, split, modCount, cur);
+			from = split;
+			cur = null;
+			return prefix;
 		}
 		
-		public void createIndex(FileWriter out)
+		public long estimateSize()
 		{
-			children.get(0).createIndex(out);
+			return to - from;
+		}
+		
+		public int characteristics()
+		{
+			return Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.SIZED | Spliterator.SUBSIZED;
+		}
+	}
+	
+//	  Returns the index to follow in a guide node for the specified key.
+	private int findGuideIndex(GuideNode node, Object key)
+	{
+		// keys.get(0) is only the lower bound, so search the separators from index 1.
+		int low = 1;
+		int high = node.keys.size() - 1;
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			if(mComp.compare(key, node.keys.get(mid)) < 0)
+				high = mid - 1;
+			else
+				low = mid + 1;
+		}
+		
+		return low - 1;
+	}
+	
+//	  Returns the index to follow in a guide node for the specified key.
+	private int findLeafIndex(LeafNode node, Object key)
+	{
+		int index = searchLeaf(node, key);
+		return index < 0 ? -1 : index;
+	}
+	
+//	  Returns the index of the specified key in a leaf node, or (-(insertion point) - 1) if it is absent.
+	private int searchLeaf(LeafNode node, Object key)
+	{
+		if(node.keys instanceof CompressedKeys)
+			return ((CompressedKeys)node.keys).search(key);
+		
+		int low = 0;
+		int high = node.keys.size() - 1;
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int c = mComp.compare(key, node.keys.get(mid));
+			if(c < 0)
+				high = mid - 1;
+			else if(c > 0)
+				low = mid + 1;
+			else
+				return mid;
+		}
+		
+		return -(low + 1);
+	}
+	
+//	  Prints this BPTree to the specified StringWriter in XML format.
+	public void printXml(StringWriter out)
+	{
+		Node cur = mRootNode;
+		while(cur instanceof BPlusTree.GuideNode)
+		{
+			cur = ((GuideNode)cur).children.get(0);
+		}		
+		mRootNode.printXml(out, 4);
+	}
+	
+//	  Returns the shape of this BPTree and an estimate of the heap it retains.
+	public TreeStats stats()
+	{
+		return stats(1.0);
+	}
+	
+//	  Returns the shape of this BPTree and an estimate of the heap it retains.
+//	  @param sampleFraction Fraction of the leaves whose keys and values are measured, in (0, 1].
+//	  @throws IllegalArgumentException thrown if sampleFraction is not in (0, 1].
+	public TreeStats stats(double sampleFraction) throws IllegalArgumentException
+	{
+		TreeStats stats = new TreeStats(mOrder, mLeafOrder, sampleFraction);
+		collectStats(mRootNode, 0, stats);
+		return stats;
+	}
+	
+//	  Adds the nodes under the specified node to stats.
+	private void collectStats(Node node, int level, TreeStats stats)
+	{
+		if(node instanceof BPlusTree.GuideNode)
+		{
+			GuideNode gn = (GuideNode)node;
 			
-			for(int i = 1; i < keys.size(); i++)
-			{
-				Node child = children.get(i);
-				
-				child.createIndex(out);
-			}
+			// keys, children, prev, next and the outer tree, plus epoch and entries.
+			stats.addGuide(level, gn.keys, gn.children.size(), TreeStats.fieldBytes(5, 2));
+			
+			for(Node child : gn.children)
+				collectStats(child, level + 1, stats);
+			return;
 		}
-
+		
+		LeafNode ln = (LeafNode)node;
+		
+		// keys, values, prev, next and the outer tree, plus epoch.
+		stats.addLeaf(level, ln.keys, ln.values, TreeStats.fieldBytes(5, 1));
+	}
+	
+	public void createIndex(FileWriter out)
+	{
+		Node cur = mRootNode;
+		while(cur instanceof BPlusTree.GuideNode)
+		{
+			cur = ((GuideNode)cur).children.get(0);
+		}
+		
+		mRootNode.createIndex(out);
+		finishIndex();
 	}
 	
+//	  Makes createIndex write a sparse index, with one record for each block of at least the specified number of
+//	  bytes of data file, instead of one for each key. searchData then reads a key's block and scans it for the
+//	  key's rows. 0 switches back to a dense index.
+//	  @throws IllegalArgumentException thrown if pBlockBytes < 0.
+	public void setSparseIndex(int pBlockBytes) throws IllegalArgumentException
+	{
+		if(pBlockBytes < 0)
+			throw new IllegalArgumentException();
+		
+		mSparseBlockBytes = pBlockBytes;
+	}
 	
-//	Represents a leaf node in the tree.
-	private class LeafNode extends Node
+//	  Indexes the rows of a key just written to the data file: in a dense index they get their own record, in a
+//	  sparse one they join the current block, or start a new one if the current one is full.
+	private void indexRows(int pKey, long pOffset, int pLength)
 	{
-		public ArrayList<ArrayList<V>> values;
+		if(mSparseBlockBytes == 0)
+		{
+			mIndexBplusTree.put(pKey, new IndexRecord(mDataFileId, pOffset, pLength));
+			return;
+		}
 		
-		private LeafNode prev = null;
-		private LeafNode next = null;
+		if(mBlockEnd >= 0 && pOffset - mBlockOffset >= mSparseBlockBytes)
+			finishIndex();
 		
+		if(mBlockEnd < 0)
+		{
+			mBlockKey = pKey;
+			mBlockOffset = pOffset;
+		}
+		mBlockEnd = pOffset + pLength;
+	}
+	
+//	  Writes the record of the last block of a sparse index.
+	private void finishIndex()
+	{
+		if(mBlockEnd < 0)
+			return;
 		
-//	Creates a new LeafNode of the specified order.
-		 
-		public LeafNode()
-		{			
-			keys = new ArrayList<K>(mLeafOrder);
-			// ArrayList로 추가
-			values = new ArrayList<ArrayList<V>>(mLeafOrder);
+		mIndexBplusTree.put(mBlockKey, new IndexRecord(mDataFileId, mBlockOffset, (int)(mBlockEnd - mBlockOffset)));
+		mBlockEnd = -1;
+	}
+	
+//	  Returns the number of bytes the specified chars take in the data file. FileWriter encodes in the platform
+//	  charset, which takes one byte per ASCII char, so only text with other chars has to be encoded to be measured.
+	private static int byteLength(CharSequence text, int start, int end)
+	{
+		for(int i = start; i < end; i++)
+		{
+			if(text.charAt(i) >= 0x80)
+				return text.subSequence(start, end).toString().getBytes().length;
 		}
 		
+		return end - start;
+	}
+	
+//	  Writes every key's values to the data file and indexes them, like createIndex(), but serializes subtrees
+//	  in parallel on the common ForkJoinPool. Each task renders a run of keys into its own buffer; the offsets
+//	  then follow from a prefix sum over the buffer lengths, and the buffers are written in key order and
+//	  bulk-loaded into the index tree.
+	public void createIndexParallel(FileWriter out) throws IOException
+	{
+		List<EmissionChunk> chunks = ForkJoinPool.commonPool().invoke(new EmitTask(mRootNode, 0));
 		
-//		  Maps the specified key to the specified value in this Node.
-//		  @return A new right node if this node was split, else null.		 
-		public Node put(K key, V value)
+		// Prefix sum: each chunk starts where the previous one ends.
+		long offset = mOffset;
+		for(EmissionChunk chunk : chunks)
 		{
-			LeafNode newLeaf = null;
-			
-			// Find insert index.
-			int insertIndex = 0;
-			while(insertIndex < keys.size())
+			chunk.offset = offset;
+			for(int length : chunk.lengths)
+				offset += length + 1;
+		}
+		
+		int[] indexKeys = new int[mSize];
+		long[] indexOffsets = new long[mSize];
+		int[] indexLengths = new int[mSize];
+		ForkJoinPool.commonPool().invoke(new RecordTask(chunks, 0, chunks.size(), indexKeys, indexOffsets, indexLengths));
+		
+		for(EmissionChunk chunk : chunks)
+			out.append(chunk.data);
+		
+		if(mSparseBlockBytes == 0)
+		{
+			int[] indexFileIds = new int[mSize];
+			Arrays.fill(indexFileIds, mDataFileId);
+			mIndexBplusTree.bulkLoad(indexKeys, new IndexRecordSlots(indexFileIds, indexOffsets, indexLengths));
+		}
+		else
+		{
+			for(int i = 0; i < mSize; i++)
+				indexRows(indexKeys[i], indexOffsets[i], indexLengths[i]);
+			finishIndex();
+		}
+		mOffset = offset;
+	}
+	
+//	  The serialized values of a run of consecutive keys.
+	private class EmissionChunk
+	{
+		// Rank of the first key of the run.
+		public final int firstRank;
+		public final StringBuilder data = new StringBuilder();
+		public final int[] keys;
+		// Length of each key's rows in bytes, as written to the data file, not counting the newline after them.
+		public final int[] lengths;
+		
+		// Position of data in the data file, once the prefix sum has been taken.
+		public long offset;
+		
+		public EmissionChunk(int firstRank, int count)
+		{
+			this.firstRank = firstRank;
+			this.keys = new int[count];
+			this.lengths = new int[count];
+		}
+	}
+	
+//	  Serializes the keys under a node, splitting large guide nodes into one task per child.
+	private class EmitTask extends RecursiveTask<List<EmissionChunk>>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private final Node node;
+		private final int firstRank;
+		
+		public EmitTask(Node node, int firstRank)
+		{
+			this.node = node;
+			this.firstRank = firstRank;
+		}
+		
+		protected List<EmissionChunk> compute()
+		{
+			int count = node.entryCount();
+			if(node instanceof BPlusTree.GuideNode && count > EMIT_CHUNK_ENTRIES)
 			{
-				if(mComp.compare(key, keys.get(insertIndex)) <= 0)
-					break;
+				ArrayList<EmitTask> tasks = new ArrayList<EmitTask>();
+				int rank = firstRank;
+				for(Node child : ((GuideNode)node).children)
+				{
+					tasks.add(new EmitTask(child, rank));
+					rank += child.entryCount();
+				}
+				invokeAll(tasks);
 				
-				insertIndex++;
+				ArrayList<EmissionChunk> chunks = new ArrayList<EmissionChunk>();
+				for(EmitTask task : tasks)
+					chunks.addAll(task.join());
+				return chunks;
 			}
 			
-			if(insertIndex < keys.size() && keys.get(insertIndex).equals(key))
-			{
-				//values.set(insertIndex, value);
-					values.get(insertIndex).add(value);
-			}
-			else
+			// Walk the leaves under the node from its leftmost one.
+			Node cur = node;
+			while(cur instanceof BPlusTree.GuideNode)
+				cur = ((GuideNode)cur).children.get(0);
+			LeafPosition p = new LeafPosition((LeafNode)cur, -1);
+			
+			EmissionChunk chunk = new EmissionChunk(firstRank, count);
+			for(int i = 0; i < count; i++)
 			{
-				// Insert the new key and value at the found index.
-				keys.add(insertIndex, key);
+				p.forward();
 				
-				if(values.size()==0 || checkKey(key))
-				{
-					
-					ArrayList<V> arrayValue = new ArrayList<V>();
-					arrayValue.add(value);
-					
-					values.add(insertIndex, arrayValue);
-				}
-				else
+				// Same layout as LeafNode.createIndex: a key's values, each followed by a newline.
+				int start = chunk.data.length();
+				PostingList<V> valueList = p.leaf.values.get(p.index);
+				for(int j = 0; j < valueList.size(); j++)
 				{
-					values.get(insertIndex).add(value);
+					if(j > 0)
+						chunk.data.append('\n');
+					chunk.data.append(valueList.get(j).toString());
 				}
 				
-				// Do we need to split?
-				if(keys.size() > mLeafOrder)
-				{
-					newLeaf = new LeafNode();
-					
-					newLeaf.keys.addAll(keys.subList(keys.size() / 2, keys.size()));
-					newLeaf.values.addAll(values.subList(values.size() / 2, values.size()));
-					
-					ArrayList<K> newKeys = new ArrayList<K>(mLeafOrder);
-					ArrayList<ArrayList<V>> newValues = new ArrayList<ArrayList<V>>(mLeafOrder);
-					
-					newKeys.addAll(keys.subList(0, keys.size() / 2));
-					newValues.addAll(values.subList(0, values.size() / 2));
-					
-					keys = newKeys;
-					values = newValues;
-					
-					newLeaf.next = next;
-					newLeaf.prev = this;
-					if(next != null)
-						next.prev = newLeaf;
-					next = newLeaf;
-				}
+				chunk.keys[i] = (Integer)p.key();
+				chunk.lengths[i] = byteLength(chunk.data, start, chunk.data.length());
+				chunk.data.append('\n');
 			}
 			
-			return newLeaf;
+			return Collections.singletonList(chunk);
 		}
+	}
+	
+//	  Renders the index records of a range of chunks into the slots given by the chunks' ranks.
+	private class RecordTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
 		
+		private final List<EmissionChunk> chunks;
+		private final int from;
+		private final int to;
+		private final int[] indexKeys;
+		private final long[] indexOffsets;
+		private final int[] indexLengths;
 		
-//		  Removes the specified key from this Node.
-//		  @return 0 if nothing was removed, 1 if a key was removed but Nodes did not merge,
-//		    2 if this Node merged with its left sibling, or 3 if this Node merged with its right sibling.
-//		 	
-//		
-//		  Returns the guide index of to use when looking for the specified key.	 
-		private int findLeafIndex(Object key)
+		public RecordTask(List<EmissionChunk> chunks, int from, int to, int[] indexKeys, long[] indexOffsets, int[] indexLengths)
 		{
-			return BPlusTree.this.findLeafIndex(this, key);
+			this.chunks = chunks;
+			this.from = from;
+			this.to = to;
+			this.indexKeys = indexKeys;
+			this.indexOffsets = indexOffsets;
+			this.indexLengths = indexLengths;
 		}
 		
-//		  Prints this Node and all keys to the specified StringWriter in XML format.	 
-		public boolean checkKey(K key)
+		protected void compute()
 		{
-			boolean result = false;
-			for(int i=0; i<keys.size(); i++)
+			if(to - from > 1)
+			{
+				int middle = (from + to) >>> 1;
+				invokeAll(new RecordTask(chunks, from, middle, indexKeys, indexOffsets, indexLengths),
+					new RecordTask(chunks, middle, to, indexKeys, indexOffsets, indexLengths));
+				return;
+			}
+			
+			for(int c = from; c < to; c++)
 			{
-				if(key == keys.get(i))
+				EmissionChunk chunk = chunks.get(c);
+				long offset = chunk.offset;
+				for(int i = 0; i < chunk.keys.length; i++)
 				{
-					return true;
+					indexKeys[chunk.firstRank + i] = chunk.keys[i];
+					indexOffsets[chunk.firstRank + i] = offset;
+					indexLengths[chunk.firstRank + i] = chunk.lengths[i];
+					offset += chunk.lengths[i] + 1;
 				}
-					
 			}
-			return result;
 		}
+	}
+	
+//	  Base class for tree nodes.
+	private abstract class Node
+	{
+		public List<K> keys;
 		
-		public void printXml(StringWriter out, int indent)
-		{
-			for(int i = 0; i < indent; i++)
-				out.write("  ");
-			out.write("<leaf>\n");
-			System.out.println(out.toString());
-			
-			// Print each entry.
-			for(int i = 0; i < keys.size(); i++)
-			{
-				K key = keys.get(i);
-				ArrayList<V> value = values.get(i);
-				
-				// Print entry.
-				for(int j = 0; j < indent + 1; j++)
-					out.write("  ");
-				out.write("<entry key=\"" + key.toString() + "\" value=\"" + value.toString() + "\"/>\n");
-				System.out.println(out.toString());
+		// Epoch in which this Node was created; older nodes may be shared with a snapshot.
+		public final int epoch = mEpoch;
+		
+//		  Returns a copy of this Node for the current epoch and links it in place of this Node among its siblings.
+		public abstract Node copy();
+		
+//		  Returns the number of keys stored in the subtree under this Node.
+		public abstract int entryCount();
+		
+//		  Maps the specified key to the specified value in this Node.
+//		  @param upsert Receives whether the key was new and the value list it now maps to.
+//		  @return A new right node if this node was split, else null.
+		public abstract Node put(K key, V value, Upsert upsert);
+		
+		
+//		  Removes the specified key from this Node.
+//		  @return The value list that was mapped to the key, or null if nothing was removed.
+		public abstract PostingList<V> remove(Object key);
+		
+//		  Returns the fewest entries this Node may hold before it must borrow from or merge with a sibling.
+		public abstract int minSize();
+		
+//		  Moves the last entry of the left sibling to the front of this Node.
+//		  @param separator The parent key separating the sibling from this Node.
+//		  @return The new key separating the sibling from this Node.
+		public abstract K borrowFromLeft(Node left, K separator);
+		
+//		  Moves the first entry of the right sibling to the end of this Node.
+//		  @param separator The parent key separating this Node from the sibling.
+//		  @return The new key separating this Node from the sibling.
+		public abstract K borrowFromRight(Node right, K separator);
+		
+//		  Moves every entry of the right sibling into this Node and unlinks the sibling.
+//		  @param separator The parent key separating this Node from the sibling.
+		public abstract void merge(Node right, K separator);
+		
+//		  Prints this Node and all sub-Node to the specified StringWriter in XML format.
+		public abstract void printXml(StringWriter out, int indent);
+		public abstract void createIndex(FileWriter out);
+	}
+	
+//	  Represents a guide node in the tree.
+	private class GuideNode extends Node
+	{
+		public ArrayList<Node> children;
+		
+		// Number of keys in the subtree under this Node.
+		public int entries = 0;
+		
+		public GuideNode prev = null;
+		public GuideNode next = null;
+		
+//		  Creates a new GuideNode of the specified order.
+		public GuideNode()
+		{			
+			keys = new ArrayList<K>(mOrder);
+			children = new ArrayList<Node>(mOrder);
+			
+			keys.add(null); // Serves as lower-bound key.
+		}
+		
+		public Node copy()
+		{
+			GuideNode gn = new GuideNode();
+			gn.keys = new ArrayList<K>(keys);
+			gn.children = new ArrayList<Node>(children);
+			gn.entries = entries;
+			
+			gn.prev = prev;
+			gn.next = next;
+			if(prev != null)
+				prev.next = gn;
+			if(next != null)
+				next.prev = gn;
+			
+			return gn;
+		}
+		
+//		  Returns the child at the specified index, first replacing it with a private copy if a snapshot shares it.
+		private Node writableChild(int index)
+		{
+			Node child = children.get(index);
+			if(child.epoch != mEpoch)
+			{
+				child = child.copy();
+				children.set(index, child);
 			}
 			
-			for(int i = 0; i < indent; i++)
-				out.write("  ");
-			out.write("</leaf>\n");
-			System.out.println(out.toString());
-		}		
+			return child;
+		}
 		
-		public void createIndex(FileWriter out)
+		public int entryCount()
 		{
-			for(int i = 0; i < keys.size(); i++)
+			return entries;
+		}
+		
+//		  Maps the specified key to the specified value in this Node.
+//		  @return A new right node if this node was split, else null.
+		public Node put(K key, V value, Upsert upsert)
+		{
+			GuideNode newGuide = null;
+			
+			int guideIndex = findGuideIndex(key);
+			
+			// Recurse to child.
+			Node newNode = writableChild(guideIndex).put(key, value, upsert);
+			if(upsert.newKey)
+				entries++;
+			
+			// Did we split?
+			if(newNode != null)
 			{
-				K wKey = keys.get(i);
-				ArrayList<V> wValueList = values.get(i);
+				// Insert the new key and node at the found index.
+				keys.add(guideIndex + 1, newNode.keys.get(0));
+				children.add(guideIndex + 1, newNode);
 				
-				try 
+				// Do we need to split?
+				if(keys.size() > mOrder)
 				{
-					StringBuilder wValueListBuilder = new StringBuilder();
+					newGuide = new GuideNode();
 					
-					for(int j=0; j<wValueList.size(); j++)
-					{
-						wValueListBuilder.append(wValueList.get(j).toString());
-						if(!(j==wValueList.size()-1))
-						{
-							wValueListBuilder.append('\n');
-						}
-					}
+					newGuide.keys.clear();
+					newGuide.keys.addAll(keys.subList(keys.size() / 2, keys.size()));
+					newGuide.children.addAll(children.subList(children.size() / 2, children.size()));
 					
-					out.write(wValueListBuilder.toString());
+					ArrayList<K> newKeys = new ArrayList<K>(mLeafOrder);
+					ArrayList<Node> newChildren = new ArrayList<Node>(mLeafOrder);
 					
-					mIndexBplusTree.put((Integer)wKey, wKey.toString() + "," + mDataFileName + "," + mOffset + "," + wValueListBuilder.length());
-					mOffset += wValueListBuilder.length();
-				} catch (IOException e) {
-					// TODO Auto-generated catch block
-					e.printStackTrace();
+					newKeys.addAll(keys.subList(0, keys.size() / 2));
+					newChildren.addAll(children.subList(0, children.size() / 2));
+					
+					keys = newKeys;
+					children = newChildren;
+					
+					for(Node child : newGuide.children)
+						newGuide.entries += child.entryCount();
+					entries -= newGuide.entries;
+					
+					newGuide.next = next;
+					newGuide.prev = this;
+					if(next != null)
+						next.prev = newGuide;
+					next = newGuide;
 				}
-			}	
+			}
+			
+			return newGuide;
+		}
+		
+//		  Removes the specified key from this Node.
+//		  Children left with too few entries borrow from or merge with their siblings.
+//		  @return The value list that was mapped to the key, or null if nothing was removed.
+		public PostingList<V> remove(Object key)
+		{
+			int guideIndex = findGuideIndex(key);
+			Node child = writableChild(guideIndex);
+			
+			PostingList<V> removed = child.remove(key);
+			if(removed != null)
+			{
+				entries--;
+				if(child.keys.size() < child.minSize())
+					rebalance(guideIndex);
+			}
+			
+			return removed;
+		}
+		
+//		  Refills the child at the specified index from one of its siblings, or merges it with one.
+		private void rebalance(int index)
+		{
+			Node child = children.get(index);
+			Node left = index > 0 ? children.get(index - 1) : null;
+			Node right = index + 1 < children.size() ? children.get(index + 1) : null;
+			
+			if(left != null && left.keys.size() > left.minSize())
+			{
+				keys.set(index, child.borrowFromLeft(writableChild(index - 1), keys.get(index)));
+			}
+			else if(right != null && right.keys.size() > right.minSize())
+			{
+				keys.set(index + 1, child.borrowFromRight(writableChild(index + 1), keys.get(index + 1)));
+			}
+			else if(left != null)
+			{
+				writableChild(index - 1).merge(child, keys.get(index));
+				keys.remove(index);
+				children.remove(index);
+			}
+			else if(right != null)
+			{
+				// The merged node adopts the sibling's value lists, so they must not be shared with a snapshot.
+				child.merge(writableChild(index + 1), keys.get(index + 1));
+				keys.remove(index + 1);
+				children.remove(index + 1);
+			}
+		}
+		
+		public int minSize()
+		{
+			return (mOrder + 1) / 2;
+		}
+		
+		public K borrowFromLeft(Node left, K separator)
+		{
+			GuideNode gn = (GuideNode)left;
+			int last = gn.keys.size() - 1;
+			
+			// The old separator now guards what used to be this Node's first child.
+			keys.set(0, separator);
+			keys.add(0, gn.keys.remove(last));
+			children.add(0, gn.children.remove(last));
+			
+			int moved = children.get(0).entryCount();
+			entries += moved;
+			gn.entries -= moved;
+			
+			return keys.get(0);
+		}
+		
+		public K borrowFromRight(Node right, K separator)
+		{
+			GuideNode gn = (GuideNode)right;
+			
+			keys.add(separator);
+			children.add(gn.children.remove(0));
+			gn.keys.remove(0);
+			
+			int moved = children.get(children.size() - 1).entryCount();
+			entries += moved;
+			gn.entries -= moved;
+			
+			return gn.keys.get(0);
+		}
+		
+		public void merge(Node right, K separator)
+		{
+			GuideNode gn = (GuideNode)right;
+			
+			// The sibling may still be shared with a snapshot, so leave its keys untouched.
+			keys.add(separator);
+			keys.addAll(gn.keys.subList(1, gn.keys.size()));
+			children.addAll(gn.children);
+			entries += gn.entries;
+			
+			next = gn.next;
+			if(next != null)
+				next.prev = this;
+		}
+		
+//		  Returns the guide index of to use when looking for the specified key.
+		private int findGuideIndex(Object key)
+		{
+			return BPlusTree.this.findGuideIndex(this, key);
+		}
+		
+//		  Prints this Node and all sub-Node to the specified StringWriter in XML format.
+		public void printXml(StringWriter out, int indent)
+		{
+			for(int i = 0; i < indent; i++)
+				out.write("  ");
+			
+			// Print first child.
+			children.get(0).printXml(out, indent + 1);
+			
+			// Print each key followed by its greater child.
+			for(int i = 1; i < keys.size(); i++)
+			{
+				K key = keys.get(i);
+				Node child = children.get(i);
+				
+				// Print key.
+				for(int j = 0; j < indent + 1; j++)
+					out.write("  ");
+
+				child.printXml(out, indent + 1);
+			}
+			
+			for(int i = 0; i < indent; i++)
+				out.write("  ");
+			out.write("</guide>\n");
+			System.out.println(out.toString());
+		}
+		
+		public void createIndex(FileWriter out)
+		{
+			children.get(0).createIndex(out);
+			
+			for(int i = 1; i < keys.size(); i++)
+			{
+				Node child = children.get(i);
+				
+				child.createIndex(out);
+			}
 		}
 
 	}
 	
-//	 Casts objects to Comparable and compares them.
-	private static class DefaultComparator<K> implements Comparator<K>
+	
+//	Represents a leaf node in the tree.
+	private class LeafNode extends Node
 	{
-		/**
-		 * Casts a to Comparable and compares it to b.
-		 */
-		public int compare(K a, K b)
+		public ArrayList<PostingList<V>> values;
+		
+		private LeafNode prev = null;
+		private LeafNode next = null;
+		
+		
+//	Creates a new LeafNode of the specified order.
+		 
+		public LeafNode()
+		{			
+			keys = mLeafKeyFormat.newKeyList(mLeafOrder);
+			// ArrayList로 추가
+			values = new ArrayList<PostingList<V>>(mLeafOrder);
+		}
+		
+		public Node copy()
 		{
-			if(a == null)
+			LeafNode ln = new LeafNode();
+			ln.keys.addAll(keys);
+			
+			// Value lists are appended to in place, so a snapshot needs its own.
+			for(PostingList<V> valueList : values)
+				ln.values.add(new PostingList<V>(valueList));
+			
+			ln.prev = prev;
+			ln.next = next;
+			if(prev != null)
+				prev.next = ln;
+			else
+				mFirstLeaf = ln;
+			if(next != null)
+				next.prev = ln;
+			else
+				mLastLeaf = ln;
+			
+			return ln;
+		}
+		
+		public int entryCount()
+		{
+			return keys.size();
+		}
+		
+		
+//		  Maps the specified key to the specified value in this Node.
+//		  @return A new right node if this node was split, else null.		 
+		public Node put(K key, V value, Upsert upsert)
+		{
+			LeafNode newLeaf = null;
+			
+			// Find insert index.
+			int insertIndex = BPlusTree.this.searchLeaf(this, key);
+			
+			if(insertIndex >= 0)
 			{
-				if(b == null)
-					return 0;
-				else
-					return -1;
+				upsert.valueList = values.get(insertIndex);
+				upsert.valueList.add(value);
 			}
 			else
 			{
-				return ((Comparable)a).compareTo(b);
-			}
+				insertIndex = -(insertIndex + 1);
+				
+				// Insert the new key and value at the found index.
+				keys.add(insertIndex, key);
+				
+				values.add(insertIndex, new PostingList<V>(value));
+				
+				upsert.newKey = true;
+				upsert.valueList = values.get(insertIndex);
+				
+				// Do we need to split?
+				if(keys.size() > mLeafOrder)
+				{
+					newLeaf = new LeafNode();
+					
+					newLeaf.keys.addAll(keys.subList(keys.size() / 2, keys.size()));
+					newLeaf.values.addAll(values.subList(values.size() / 2, values.size()));
+					
+					List<K> newKeys = mLeafKeyFormat.newKeyList(mLeafOrder);
+					ArrayList<PostingList<V>> newValues = new ArrayList<PostingList<V>>(mLeafOrder);
+					
+					newKeys.addAll(keys.subList(0, keys.size() / 2));
+					newValues.addAll(values.subList(0, values.size() / 2));
+					
+					keys = newKeys;
+					values = newValues;
+					
+					newLeaf.next = next;
+					newLeaf.prev = this;
+					if(next != null)
+						next.prev = newLeaf;
+					else
+						mLastLeaf = newLeaf;
+					next = newLeaf;
+				}
+			}
+			
+			return newLeaf;
+		}
+		
+		
+//		  Removes the specified key from this Node.
+//		  @return The value list that was mapped to the key, or null if nothing was removed.
+		public PostingList<V> remove(Object key)
+		{
+			int index = findLeafIndex(key);
+			if(index == -1)
+				return null;
+			
+			keys.remove(index);
+			return values.remove(index);
+		}
+		
+		public int minSize()
+		{
+			return (mLeafOrder + 1) / 2;
+		}
+		
+		public K borrowFromLeft(Node left, K separator)
+		{
+			LeafNode ln = (LeafNode)left;
+			int last = ln.keys.size() - 1;
+			
+			keys.add(0, ln.keys.remove(last));
+			values.add(0, ln.values.remove(last));
+			
+			return keys.get(0);
+		}
+		
+		public K borrowFromRight(Node right, K separator)
+		{
+			LeafNode ln = (LeafNode)right;
+			
+			keys.add(ln.keys.remove(0));
+			values.add(ln.values.remove(0));
+			
+			return ln.keys.get(0);
+		}
+		
+		public void merge(Node right, K separator)
+		{
+			LeafNode ln = (LeafNode)right;
+			
+			keys.addAll(ln.keys);
+			values.addAll(ln.values);
+			
+			next = ln.next;
+			if(next != null)
+				next.prev = this;
+			else
+				mLastLeaf = this;
+		}
+		
+//		  Returns the guide index of to use when looking for the specified key.	 
+		private int findLeafIndex(Object key)
+		{
+			return BPlusTree.this.findLeafIndex(this, key);
+		}
+		
+//		  Prints this Node and all keys to the specified StringWriter in XML format.	 
+		public void printXml(StringWriter out, int indent)
+		{
+			for(int i = 0; i < indent; i++)
+				out.write("  ");
+			out.write("<leaf>\n");
+			System.out.println(out.toString());
+			
+			// Print each entry.
+			for(int i = 0; i < keys.size(); i++)
+			{
+				K key = keys.get(i);
+				PostingList<V> value = values.get(i);
+				
+				// Print entry.
+				for(int j = 0; j < indent + 1; j++)
+					out.write("  ");
+				out.write("<entry key=\"" + key.toString() + "\" value=\"" + value.toString() + "\"/>\n");
+				System.out.println(out.toString());
+			}
+			
+			for(int i = 0; i < indent; i++)
+				out.write("  ");
+			out.write("</leaf>\n");
+			System.out.println(out.toString());
+		}		
+		
+		public void createIndex(FileWriter out)
+		{
+			for(int i = 0; i < keys.size(); i++)
+			{
+				K wKey = keys.get(i);
+				PostingList<V> wValueList = values.get(i);
+				
+				try 
+				{
+					StringBuilder wValueListBuilder = new StringBuilder();
+					
+					for(int j=0; j<wValueList.size(); j++)
+					{
+						wValueListBuilder.append(wValueList.get(j).toString());
+						if(!(j==wValueList.size()-1))
+						{
+							wValueListBuilder.append('\n');
+						}
+					}
+					
+					// The newline ends the key's rows, so a sparse index can scan a block row by row.
+					out.write(wValueListBuilder.toString());
+					out.write('\n');
+					
+					int wLength = byteLength(wValueListBuilder, 0, wValueListBuilder.length());
+					indexRows((Integer)wKey, mOffset, wLength);
+					mOffset += wLength + 1;
+				} catch (IOException e) {
+					// TODO Auto-generated catch block
+					e.printStackTrace();
+				}
+			}	
+		}
+
+	}
+	
+//	  Result of inserting a value: whether its key was new and the value list the key now maps to.
+	private class Upsert
+	{
+		public boolean newKey = false;
+		public PostingList<V> valueList = null;
+	}
+	
+//	  Builds the tree bottom-up: leaves are filled left-to-right as entries arrive and the guide levels are
+//	  built above them in finish(). If the tree was not empty, or a key arrives out of order, the loader
+//	  falls back to put() for everything from that point on.
+//	  The tree must not be read until finish() has been called.
+	public class BulkLoader
+	{
+		private final double fillFactor;
+		private final int leafCapacity;
+		
+		private ArrayList<LeafNode> leaves = new ArrayList<LeafNode>();
+		private LeafNode curLeaf;
+		private K lastKey = null;
+		
+		private boolean fallback;
+		private boolean finished = false;
+		
+//		  Creates a new BulkLoader filling nodes to the specified fraction of their order.
+		private BulkLoader(double fillFactor)
+		{
+			if(!(fillFactor > 0 && fillFactor <= 1))
+				throw new IllegalArgumentException();
+			
+			this.fillFactor = fillFactor;
+			this.leafCapacity = capacity(mLeafOrder, 1);
+			
+			fallback = mSize != 0;
+			if(!fallback)
+			{
+				curLeaf = new LeafNode();
+				leaves.add(curLeaf);
+			}
+		}
+		
+//		  Adds the specified key/value. Keys equal to the previous key are appended to its value list.
+		public void add(K key, V value)
+		{
+			if(finished)
+				throw new IllegalStateException();
+			if(key == null)
+				throw new NullPointerException();
+			
+			if(!fallback && lastKey != null)
+			{
+				int c = mComp.compare(key, lastKey);
+				if(c == 0)
+				{
+					curLeaf.values.get(curLeaf.values.size() - 1).add(value);
+					return;
+				}
+				else if(c < 0)
+				{
+					// Input is not sorted: finish the structure built so far and insert the rest normally.
+					buildGuides();
+					fallback = true;
+				}
+			}
+			
+			if(fallback)
+			{
+				append(key, value);
+				return;
+			}
+			
+			if(curLeaf.keys.size() >= leafCapacity)
+			{
+				LeafNode newLeaf = new LeafNode();
+				newLeaf.prev = curLeaf;
+				curLeaf.next = newLeaf;
+				curLeaf = newLeaf;
+				leaves.add(curLeaf);
+			}
+			
+			curLeaf.keys.add(key);
+			curLeaf.values.add(new PostingList<V>(value));
+			
+			lastKey = key;
+			mSize++;
+		}
+		
+//		  Builds the guide levels above the loaded leaves. The tree may be used normally afterwards.
+		public void finish()
+		{
+			if(finished)
+				return;
+			
+			if(!fallback)
+				buildGuides();
+			finished = true;
+		}
+		
+//		  Returns the number of entries per node for the specified order, never less than min.
+		private int capacity(int order, int min)
+		{
+			return Math.max(min, Math.min(order, (int)Math.round(order * fillFactor)));
+		}
+		
+//		  Builds guide levels over the loaded leaves and installs the new root.
+		private void buildGuides()
+		{
+			// Don't leave a nearly empty leaf at the end; share entries with its left neighbour.
+			if(leaves.size() > 1 && curLeaf.keys.size() < leafCapacity / 2)
+			{
+				LeafNode left = curLeaf.prev;
+				int total = left.keys.size() + curLeaf.keys.size();
+				int move = left.keys.size() - (total - total / 2);
+				
+				curLeaf.keys.addAll(0, left.keys.subList(left.keys.size() - move, left.keys.size()));
+				curLeaf.values.addAll(0, left.values.subList(left.values.size() - move, left.values.size()));
+				left.keys.subList(left.keys.size() - move, left.keys.size()).clear();
+				left.values.subList(left.values.size() - move, left.values.size()).clear();
+			}
+			
+			ArrayList<Node> level = new ArrayList<Node>(leaves);
+			ArrayList<K> lowKeys = new ArrayList<K>(leaves.size());
+			for(LeafNode leaf : leaves)
+				lowKeys.add(leaf.keys.isEmpty() ? null : leaf.keys.get(0));
+			
+			int guideCapacity = capacity(mOrder, 2);
+			while(level.size() > 1)
+			{
+				int groups = (level.size() + guideCapacity - 1) / guideCapacity;
+				
+				ArrayList<Node> upper = new ArrayList<Node>(groups);
+				ArrayList<K> upperLowKeys = new ArrayList<K>(groups);
+				GuideNode prevGuide = null;
+				
+				// Spread the children evenly so the last guide node is not left nearly empty.
+				int from = 0;
+				for(int g = 0; g < groups; g++)
+				{
+					int to = (int)((long)level.size() * (g + 1) / groups);
+					
+					GuideNode guide = new GuideNode();
+					if(from > 0)
+						guide.keys.set(0, lowKeys.get(from));
+					guide.children.add(level.get(from));
+					for(int i = from + 1; i < to; i++)
+					{
+						guide.keys.add(lowKeys.get(i));
+						guide.children.add(level.get(i));
+					}
+					for(Node child : guide.children)
+						guide.entries += child.entryCount();
+					
+					guide.prev = prevGuide;
+					if(prevGuide != null)
+						prevGuide.next = guide;
+					prevGuide = guide;
+					
+					upper.add(guide);
+					upperLowKeys.add(lowKeys.get(from));
+					from = to;
+				}
+				
+				level = upper;
+				lowKeys = upperLowKeys;
+			}
+			
+			mRootNode = level.get(0);
+			mFirstLeaf = leaves.get(0);
+			mLastLeaf = leaves.get(leaves.size() - 1);
+			mModCount++;
+		}
+	}
+	
+//	 Casts objects to Comparable and compares them.
+	private static class DefaultComparator<K> implements Comparator<K>
+	{
+		/**
+		 * Casts a to Comparable and compares it to b.
+		 */
+		public int compare(K a, K b)
+		{
+			if(a == null)
+			{
+				if(b == null)
+					return 0;
+				else
+					return -1;
+			}
+			else
+			{
+				return ((Comparable)a).compareTo(b);
+			}
+		}
+	}
+	
+//	  A NavigableMap which represents a sub-region of the key-space mapped by a BPTree, in ascending or descending order.
+//	  A null bound leaves that side of the region open.
+	private class SubMap extends AbstractMap<K,V> implements NavigableMap<K,V>
+	{
+		private K low;
+		private boolean lowInclusive;
+		private K high;
+		private boolean highInclusive;
+		
+		private boolean descending;
+		
+		private final EntrySet esInstance = new EntrySet();
+		
+		
+//		  Creates a new SubMap representing the sub-region between low (inclusive) and high (exclusive).
+		public SubMap(K low, K high)
+		{
+			this(low, true, high, false, false);
+		}
+		
+		
+//		  Creates a new SubMap representing the entire BPTree.
+		public SubMap()
+		{
+			this(null, false, null, false, false);
+		}
+		
+		
+//		  Creates a new SubMap representing the sub-region between low and high.
+//		  @param descending Whether this SubMap orders its keys from high to low.
+		public SubMap(K low, boolean lowInclusive, K high, boolean highInclusive, boolean descending)
+		{
+			this.low = low;
+			this.lowInclusive = lowInclusive;
+			this.high = high;
+			this.highInclusive = highInclusive;
+			this.descending = descending;
+		}
+		
+		
+//		  Returns whether the specified key lies below the low bound.
+		private boolean tooLow(Object key)
+		{
+			if(low == null)
+				return false;
+			
+			int c = mComp.compare(key, low);
+			return c < 0 || (c == 0 && !lowInclusive);
+		}
+		
+		
+//		  Returns whether the specified key lies above the high bound.
+		private boolean tooHigh(Object key)
+		{
+			if(high == null)
+				return false;
+			
+			int c = mComp.compare(key, high);
+			return c > 0 || (c == 0 && !highInclusive);
+		}
+		
+		
+//		  Returns whether the specified key is valid for this SubMap.
+		private boolean checkKey(Object key)
+		{
+			return !tooLow(key) && !tooHigh(key);
+		}
+		
+		
+//		  Returns the position of the lowest key in this SubMap, or null if it is empty.
+		private LeafPosition absLowest()
+		{
+			LeafPosition p = low == null ? firstPosition() : ceilingPosition(low, lowInclusive);
+			return p == null || tooHigh(p.key()) ? null : p;
+		}
+		
+		
+//		  Returns the position of the highest key in this SubMap, or null if it is empty.
+		private LeafPosition absHighest()
+		{
+			LeafPosition p = high == null ? lastPosition() : floorPosition(high, highInclusive);
+			return p == null || tooLow(p.key()) ? null : p;
+		}
+		
+		
+//		  Returns the position of the lowest key in this SubMap at or above (or, if not inclusive, above) the specified key.
+		private LeafPosition absCeiling(Object key, boolean inclusive)
+		{
+			if(tooLow(key))
+				return absLowest();
+			
+			LeafPosition p = ceilingPosition(key, inclusive);
+			return p == null || tooHigh(p.key()) ? null : p;
+		}
+		
+		
+//		  Returns the position of the highest key in this SubMap at or below (or, if not inclusive, below) the specified key.
+		private LeafPosition absFloor(Object key, boolean inclusive)
+		{
+			if(tooHigh(key))
+				return absHighest();
+			
+			LeafPosition p = floorPosition(key, inclusive);
+			return p == null || tooLow(p.key()) ? null : p;
+		}
+		
+		
+//		  Returns whether this SubMap contains the specified key.
+		public boolean containsKey(Object key)
+		{
+			return checkKey(key) && BPlusTree.this.containsKey(key);
+		}
+		
+		
+//		  Returns the value associated with the specified key.
+		public V get(Object key)
+		{
+			if(checkKey(key))
+				return BPlusTree.this.get(key);
+			else
+				return null;
+		}
+		
+		
+//		  Associates the specified value with the specified key in this SubMap.
+		public V put(K key, V value)
+		{
+			if(checkKey(key))
+				return BPlusTree.this.put(key, value);
+			else
+				throw new IllegalArgumentException();
+		}
+
+		
+//		  Removes the specified key from this SubMap.
+		public V remove(Object key)
+		{
+			if(checkKey(key))
+				return BPlusTree.this.remove(key);
+			else
+				return null;
+		}
+		
+//		  Returns the Comparator used to compare keys.
+		public Comparator comparator()
+		{
+			if(descending)
+				return Collections.reverseOrder(mComp);
+			else
+				return BPlusTree.this.comparator();
+		}
+		
+		
+//		  Returns the first key in this SubMap.
+		public K firstKey()
+		{
+			return key(descending ? absHighest() : absLowest());
+		}
+		
+		
+//		  Returns the last key in this SubMap.
+		public K lastKey()
+		{
+			return key(descending ? absLowest() : absHighest());
+		}
+		
+		
+//		  Returns the key at the specified position.
+//		  @throws NoSuchElementException thrown if the position is null.
+		private K key(LeafPosition p) throws NoSuchElementException
+		{
+			if(p == null)
+				throw new NoSuchElementException();
+			
+			return p.key();
+		}
+		
+		
+		public Entry<K,V> firstEntry()
+		{
+			return entryOrNull(descending ? absHighest() : absLowest());
+		}
+		
+		public Entry<K,V> lastEntry()
+		{
+			return entryOrNull(descending ? absLowest() : absHighest());
+		}
+		
+		public Entry<K,V> lowerEntry(K key)
+		{
+			return entryOrNull(descending ? absCeiling(key, false) : absFloor(key, false));
+		}
+		
+		public Entry<K,V> floorEntry(K key)
+		{
+			return entryOrNull(descending ? absCeiling(key, true) : absFloor(key, true));
+		}
+		
+		public Entry<K,V> ceilingEntry(K key)
+		{
+			return entryOrNull(descending ? absFloor(key, true) : absCeiling(key, true));
+		}
+		
+		public Entry<K,V> higherEntry(K key)
+		{
+			return entryOrNull(descending ? absFloor(key, false) : absCeiling(key, false));
+		}
+		
+		public K lowerKey(K key)
+		{
+			return keyOrNull(lowerEntry(key));
+		}
+		
+		public K floorKey(K key)
+		{
+			return keyOrNull(floorEntry(key));
+		}
+		
+		public K ceilingKey(K key)
+		{
+			return keyOrNull(ceilingEntry(key));
+		}
+		
+		public K higherKey(K key)
+		{
+			return keyOrNull(higherEntry(key));
+		}
+		
+		private Entry<K,V> entryOrNull(LeafPosition p)
+		{
+			return p == null ? null : p.entry();
+		}
+		
+		private K keyOrNull(Entry<K,V> e)
+		{
+			return e == null ? null : e.getKey();
+		}
+		
+		
+//		  Removes and returns the first entry in this SubMap, or returns null if it is empty.
+		public Entry<K,V> pollFirstEntry()
+		{
+			Entry<K,V> e = firstEntry();
+			if(e != null)
+				BPlusTree.this.remove(e.getKey());
+			
+			return e;
+		}
+		
+		
+//		  Removes and returns the last entry in this SubMap, or returns null if it is empty.
+		public Entry<K,V> pollLastEntry()
+		{
+			Entry<K,V> e = lastEntry();
+			if(e != null)
+				BPlusTree.this.remove(e.getKey());
+			
+			return e;
+		}
+		
+		
+//		  Returns a Set view of the Entries mapped in this SubMap.
+		public Set<Entry<K,V>> entrySet()
+		{
+			return esInstance;
+		}
+		
+		
+//		  Returns a view of this SubMap in the reverse order. Its iterators walk the leaves along their prev links.
+		public NavigableMap<K,V> descendingMap()
+		{
+			return new SubMap(low, lowInclusive, high, highInclusive, !descending);
+		}
+		
+		public NavigableSet<K> navigableKeySet()
+		{
+			return new KeySet(this);
+		}
+		
+		public NavigableSet<K> descendingKeySet()
+		{
+			return new KeySet(descendingMap());
+		}
+		
+		
+//		  Returns a map representing a sub-range of the keys stored in this SubMap.
+		public NavigableMap<K,V> subMap(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive)
+		{
+			if(descending)
+				return restrict(toKey, toInclusive, fromKey, fromInclusive);
+			else
+				return restrict(fromKey, fromInclusive, toKey, toInclusive);
+		}
+		
+		
+//		  Returns a map representing a sub-range of the keys stored in this SubMap.
+		public NavigableMap<K,V> headMap(K toKey, boolean inclusive)
+		{
+			if(descending)
+				return restrict(toKey, inclusive, null, false);
+			else
+				return restrict(null, false, toKey, inclusive);
+		}
+		
+		
+//		  Returns a map representing a sub-range of the keys stored in this SubMap.
+		public NavigableMap<K,V> tailMap(K fromKey, boolean inclusive)
+		{
+			if(descending)
+				return restrict(null, false, fromKey, inclusive);
+			else
+				return restrict(fromKey, inclusive, null, false);
+		}
+		
+		
+//		  Returns a map representing a sub-range of the keys stored in this SubMap.
+		public SortedMap<K, V> subMap(K arg0, K arg1)
+		{
+			return subMap(arg0, true, arg1, false);
+		}
+
+		
+//		  Returns a map representing a sub-range of the keys stored in this SubMap.
+		public SortedMap<K, V> headMap(K arg0)
+		{
+			return headMap(arg0, false);
+		}
+
+		
+//		  Returns a map representing a sub-range of the keys stored in this SubMap.
+		public SortedMap<K, V> tailMap(K arg0)
+		{
+			return tailMap(arg0, true);
+		}
+		
+		
+//		  Returns a SubMap in the same order whose bounds are the tighter of this SubMap's and the specified ones.
+//		  A null key keeps this SubMap's bound on that side.
+		private SubMap restrict(K newLow, boolean newLowInclusive, K newHigh, boolean newHighInclusive)
+		{
+			if(newLow == null || (low != null && mComp.compare(newLow, low) < 0))
+			{
+				newLow = low;
+				newLowInclusive = lowInclusive;
+			}
+			else if(low != null && mComp.compare(newLow, low) == 0)
+			{
+				newLowInclusive &= lowInclusive;
+			}
+			
+			if(newHigh == null || (high != null && mComp.compare(newHigh, high) > 0))
+			{
+				newHigh = high;
+				newHighInclusive = highInclusive;
+			}
+			else if(high != null && mComp.compare(newHigh, high) == 0)
+			{
+				newHighInclusive &= highInclusive;
+			}
+			
+			return new SubMap(newLow, newLowInclusive, newHigh, newHighInclusive, descending);
+		}
+		
+		
+//		  A set of map entries backed by a SubMap.
+		private class EntrySet extends AbstractSet<Entry<K,V>>
+		{			
+			
+//			  Removes all entries from this Set.
+			public void clear()
+			{
+				if(low == null && high == null)
+					BPlusTree.this.clear();
+				else
+					super.clear();
+			}
+
+			
+//			  Returns whether this Set contains the specified entry.
+			public boolean contains(Object entry)
+			{
+				if(entry instanceof Entry)
+				{
+					Entry<K,V> e = (Entry<K,V>)entry;
+					if(SubMap.this.containsKey(e.getKey()))
+					{
+						V value = SubMap.this.get(e.getKey());
+						return value == null ? e.getValue() == null : value.equals(e.getValue());
+					}
+					else
+					{
+						return false;
+					}
+				}
+				else
+				{
+					return false;
+				}
+			}
+
+			
+//			  Returns an iterator which iterates over the elements in this Set.
+			public Iterator<Entry<K, V>> iterator()
+			{
+				return new EntrySetIterator();
+			}
+//			  Removes the specified entry from this set.
+			 
+//			  Returns the number of elements in this set.
+			public int size()
+			{
+				if(low == null && high == null)
+					return BPlusTree.this.size();
+				
+				int from = low == null ? 0 : rank(mRootNode, low, !lowInclusive);
+				int to = high == null ? mSize : rank(mRootNode, high, highInclusive);
+				return Math.max(0, to - from);
+			}
+			
+			
+//			  Returns a Spliterator which splits this Set at guide node boundaries, for parallel streams.
+			public Spliterator<Entry<K,V>> spliterator()
+			{
+				// A descending view walks the prev links one entry at a time.
+				if(descending)
+					return super.spliterator();
+				
+				int from = low == null ? 0 : rank(mRootNode, low, !lowInclusive);
+				int to = high == null ? mSize : rank(mRootNode, high, highInclusive);
+				return new EntrySpliterator(from, Math.max(from, to), mModCount, null);
+			}
+			
+			
+//			  Iterates through all of the entries in the set, along the next links or, if descending, the prev links.
+			private class EntrySetIterator implements Iterator<Entry<K,V>>
+			{
+				private int modCount;
+				
+				// Position of the entry next() returns, or null at the end of the iteration.
+				private LeafPosition cur;
+				
+				
+//				  Creates a new BPTreeIterator.
+				public EntrySetIterator()
+				{
+					modCount = BPlusTree.this.mModCount;
+					cur = descending ? absHighest() : absLowest();
+				}
+				
+//				  Returs whether there are any entries left in the iteration.
+				public boolean hasNext()
+				{
+					return cur != null;
+				}
+				
+				
+//				  Returns the next entry in the iteration.
+				public Entry<K,V> next()
+				{
+					// Make sure tree has not been modified.
+					if(modCount != BPlusTree.this.mModCount)
+						throw new ConcurrentModificationException();
+					
+					// No more entries?
+					if(!hasNext())
+						throw new NoSuchElementException();
+					
+					Entry<K,V> entry = cur.entry();
+					
+					// Step to the neighbouring entry, and stop at the far bound.
+					if(descending)
+					{
+						if(!cur.backward() || tooLow(cur.key()))
+							cur = null;
+					}
+					else
+					{
+						if(!cur.forward() || tooHigh(cur.key()))
+							cur = null;
+					}
+					
+					return entry;
+				}
+			}
+		}
+	}
+	
+	
+//	  A NavigableSet of the keys of a NavigableMap, in the map's order.
+	private class KeySet extends AbstractSet<K> implements NavigableSet<K>
+	{
+		private final NavigableMap<K,V> map;
+		
+		public KeySet(NavigableMap<K,V> map)
+		{
+			this.map = map;
+		}
+		
+		public int size()
+		{
+			return map.size();
+		}
+		
+		public boolean contains(Object key)
+		{
+			return map.containsKey(key);
+		}
+		
+		public boolean remove(Object key)
+		{
+			if(!map.containsKey(key))
+				return false;
+			
+			map.remove(key);
+			return true;
+		}
+		
+		public void clear()
+		{
+			map.clear();
+		}
+		
+		public Iterator<K> iterator()
+		{
+			final Iterator<Entry<K,V>> entries = map.entrySet().iterator();
+			return new Iterator<K>()
+			{
+				public boolean hasNext()
+				{
+					return entries.hasNext();
+				}
+				
+				public K next()
+				{
+					return entries.next().getKey();
+				}
+			};
+		}
+		
+		public Iterator<K> descendingIterator()
+		{
+			return descendingSet().iterator();
+		}
+		
+		public NavigableSet<K> descendingSet()
+		{
+			return new KeySet(map.descendingMap());
+		}
+		
+		public Comparator<? super K> comparator()
+		{
+			return map.comparator();
+		}
+		
+		public K first()
+		{
+			return map.firstKey();
+		}
+		
+		public K last()
+		{
+			return map.lastKey();
+		}
+		
+		public K lower(K key)
+		{
+			return map.lowerKey(key);
+		}
+		
+		public K floor(K key)
+		{
+			return map.floorKey(key);
+		}
+		
+		public K ceiling(K key)
+		{
+			return map.ceilingKey(key);
+		}
+		
+		public K higher(K key)
+		{
+			return map.higherKey(key);
+		}
+		
+		public K pollFirst()
+		{
+			Entry<K,V> e = map.pollFirstEntry();
+			return e == null ? null : e.getKey();
+		}
+		
+		public K pollLast()
+		{
+			Entry<K,V> e = map.pollLastEntry();
+			return e == null ? null : e.getKey();
+		}
+		
+		public NavigableSet<K> subSet(K fromKey, boolean fromInclusive, K toKey, boolean toInclusive)
+		{
+			return new KeySet(map.subMap(fromKey, fromInclusive, toKey, toInclusive));
+		}
+		
+		public NavigableSet<K> headSet(K toKey, boolean inclusive)
+		{
+			return new KeySet(map.headMap(toKey, inclusive));
+		}
+		
+		public NavigableSet<K> tailSet(K fromKey, boolean inclusive)
+		{
+			return new KeySet(map.tailMap(fromKey, inclusive));
+		}
+		
+		public SortedSet<K> subSet(K fromKey, K toKey)
+		{
+			return subSet(fromKey, true, toKey, false);
+		}
+		
+		public SortedSet<K> headSet(K toKey)
+		{
+			return headSet(toKey, false);
+		}
+		
+		public SortedSet<K> tailSet(K fromKey)
+		{
+			return tailSet(fromKey, true);
 		}
 	}
 	
-//	  A SortedMap which represents a sub-region of the key-space mapped by a BPTree.
-	private class SubMap extends AbstractMap<K,V> implements SortedMap<K,V>
+	
+//	  An entry in a BPTree bound to a key and backed by the tree.
+	private class BPTEntry implements Entry<K,V>
 	{
-		private K low;
-		private K high;
+		private K key;
+		private PostingList<V> valueList;
+		private BPlusTree<K,V> tree;
+		// The value list as getValue() renders it, once it has been asked for.
+		private V renderedValue = null;
 		
-		private final EntrySet esInstance = new EntrySet();
+//		  Creates a new BPTEntry bound to the specified key and its value list in a leaf of the specified tree.
+		public BPTEntry(K key, PostingList<V> valueList, BPlusTree<K,V> tree)
+		{
+			this.key = key;
+			this.valueList = valueList;
+			this.tree = tree;
+		}
 		
+//		  Returns the key to which this entry is bound. 
+		public K getKey()
+		{
+			return key;
+		}
 		
-//		  Creates a new SubMap representing the sub-region between low (inclusive) and high (exclusive).
-		public SubMap(K low, K high)
+//		  Returns the value associated with this entry, rendered the same way get() renders it.
+//		  The value list was taken from the leaf during iteration, so the tree is not searched again, and it is
+//		  rendered once, on the first call.
+		public V getValue()
 		{
-			this.low = low;
-			this.high = high;
+			if(renderedValue == null)
+				renderedValue = (V)valueList.toString();
+			return renderedValue;
 		}
 		
 		
-//		  Creates a new SubMap representing the entire BPTree.
-		public SubMap()
+//		  Sets the value associated with this entry. The BPTree will be changed to reflect the new value.
+		public V setValue(V value)
 		{
-			low = null;
-			high = null;
+			renderedValue = null;
+			return tree.put(key, value);
 		}
+	}
+	
+//	  An immutable point-in-time view of a BPTree, restricted to keys between low (inclusive) and high (exclusive).
+//	  Iteration walks the shared nodes from the root down rather than along the leaf links, which the live tree
+//	  keeps rewriting as it copies nodes.
+	public class Snapshot extends AbstractMap<K,V> implements SortedMap<K,V>
+	{
+		private final Node root;
+		private final int size;
+		private final K low;
+		private final K high;
 		
+		private final EntrySet esInstance = new EntrySet();
 		
-//		  Returns whether the specified key is valid for this SubMap.
+//		  Creates a new Snapshot of the tree below root. size is the number of keys below root.
+		private Snapshot(Node root, int size, K low, K high)
+		{
+			this.root = root;
+			this.size = size;
+			this.low = low;
+			this.high = high;
+		}
+		
+//		  Returns whether the specified key is valid for this Snapshot.
 		private boolean checkKey(Object key)
 		{
 			return (low == null || mComp.compare(key, low) >= 0) && (high == null || mComp.compare(key, high) < 0);
 		}
 		
+//		  Returns the leaf of this Snapshot that would contain the specified key.
+		private LeafNode findLeaf(Object key)
+		{
+			Node cur = root;
+			while(cur instanceof BPlusTree.GuideNode)
+			{
+				GuideNode gn = (GuideNode)cur;
+				cur = gn.children.get(findGuideIndex(gn, key));
+			}
+			
+			return (LeafNode)cur;
+		}
 		
-//		  Returns whether this SubMap contains the specified key.
+//		  Returns whether this Snapshot contains the specified key.
 		public boolean containsKey(Object key)
 		{
-			return checkKey(key) && BPlusTree.this.containsKey(key);
+			return checkKey(key) && findLeafIndex(findLeaf(key), key) != -1;
 		}
 		
-		
-//		  Returns the value associated with the specified key.
+//		  Returns the values associated with the specified key, rendered the same way BPTree.get() renders them.
 		public V get(Object key)
 		{
-			if(checkKey(key))
-				return BPlusTree.this.get(key);
-			else
+			if(!checkKey(key))
+				return null;
+			
+			LeafNode ln = findLeaf(key);
+			int index = findLeafIndex(ln, key);
+			if(index == -1)
 				return null;
+			else
+				return (V)ln.values.get(index).toString();
 		}
 		
-		
-//		  Associates the specified value with the specified key in this SubMap.
-		public V put(K key, V value)
+//		  Returns the number of keys in this Snapshot.
+		public int size()
 		{
-			if(checkKey(key))
-				return BPlusTree.this.put(key, value);
+			if(low == null && high == null)
+				return size;
 			else
-				throw new IllegalArgumentException();
+				return countRange(root, size, low, high);
 		}
-
 		
 //		  Returns the Comparator used to compare keys.
-		public Comparator comparator()
+		public Comparator<K> comparator()
 		{
 			return BPlusTree.this.comparator();
 		}
 		
-		
-//		  Returns the first key in this SubMap.
+//		  Returns the first key in this Snapshot.
 		public K firstKey()
 		{
-			for(K key : this.keySet())
-				return key;
+			int from = low == null ? 0 : rank(root, low);
+			int to = high == null ? size : rank(root, high);
+			if(from >= to)
+				throw new NoSuchElementException();
 			
-			throw new NoSuchElementException();
+			return select(root, from);
 		}
 		
-		
-//		  Returns the last key in this SubMap.
+//		  Returns the last key in this Snapshot.
 		public K lastKey()
 		{
-			K key = null;
-			for(K k : this.keySet())
-				key = k;
-			
-			if(key == null)
+			int from = low == null ? 0 : rank(root, low);
+			int to = high == null ? size : rank(root, high);
+			if(from >= to)
 				throw new NoSuchElementException();
 			
-			return key;
+			return select(root, to - 1);
 		}
 		
-		
-//		  Returns a Set view of the Entries mapped in this SubMap.
+//		  Returns a Set view of the Entries in this Snapshot.
 		public Set<Entry<K,V>> entrySet()
 		{
 			return esInstance;
 		}
 		
-		
-//		  Returns a map representing a sub-range of the keys stored in this SubMap.
+//		  Returns a view of the portion of this Snapshot between arg0 (inclusive) and arg1 (exclusive).
 		public SortedMap<K, V> subMap(K arg0, K arg1)
 		{
-			// Make sure specified bounds stay within the bounds of THIS SubMap.
-			K newLow, newHigh;
-			if(arg0 != null && mComp.compare(arg0, low) > 0)
+			// Make sure specified bounds stay within the bounds of THIS Snapshot.
+			K newLow = low, newHigh = high;
+			if(arg0 != null && (low == null || mComp.compare(arg0, low) > 0))
 				newLow = arg0;
-			else
-				newLow = low;
-			if(arg1 != null && mComp.compare(arg1, high) < 0)
+			if(arg1 != null && (high == null || mComp.compare(arg1, high) < 0))
 				newHigh = arg1;
-			else
-				newHigh = high;
 			
-			// Return a new SubMap.
-			return BPlusTree.this.subMap(newLow, newHigh);
+			return new Snapshot(root, size, newLow, newHigh);
 		}
-
 		
-//		  Returns a map representing a sub-range of the keys stored in this SubMap.
+//		  Returns a view of the portion of this Snapshot below arg0.
 		public SortedMap<K, V> headMap(K arg0)
 		{
-			return subMap(firstKey(), arg0);
+			return subMap(null, arg0);
 		}
-
 		
-//		  Returns a map representing a sub-range of the keys stored in this SubMap.
+//		  Returns a view of the portion of this Snapshot from arg0 upwards.
 		public SortedMap<K, V> tailMap(K arg0)
 		{
-			return subMap(arg0, lastKey());
+			return subMap(arg0, null);
 		}
 		
-		
-//		  A set of map entries backed by a SubMap.
+//		  A read-only set of the entries in a Snapshot.
 		private class EntrySet extends AbstractSet<Entry<K,V>>
-		{			
+		{
+			public Iterator<Entry<K,V>> iterator()
+			{
+				return new SnapshotIterator();
+			}
 			
-//			  Removes all entries from this Set.
-			public void clear()
+			public int size()
 			{
-				if(low == null && high == null)
-					BPlusTree.this.clear();
-				else
-					super.clear();
+				return Snapshot.this.size();
 			}
-
+		}
+		
+//		  Iterates through the entries of a Snapshot, keeping the path from the root to the current leaf.
+		private class SnapshotIterator implements Iterator<Entry<K,V>>
+		{
+			private final ArrayList<GuideNode> path = new ArrayList<GuideNode>();
+			private final ArrayList<Integer> pathIndex = new ArrayList<Integer>();
 			
-//			  Returns whether this Set contains the specified entry.
-			public boolean contains(Object entry)
+			private LeafNode curNode;
+			private int curIndex = 0;
+			
+//			  Creates a new SnapshotIterator positioned at the first key >= low.
+			public SnapshotIterator()
 			{
-				if(entry instanceof Entry)
+				Node cur = root;
+				while(cur instanceof BPlusTree.GuideNode)
 				{
-					Entry<K,V> e = (Entry<K,V>)entry;
-					if(SubMap.this.containsKey(e.getKey()))
-					{
-						V value = SubMap.this.get(e.getKey());
-						return value == null ? e.getValue() == null : value.equals(e.getValue());
-					}
-					else
-					{
-						return false;
-					}
+					GuideNode gn = (GuideNode)cur;
+					int index = low == null ? 0 : findGuideIndex(gn, low);
+					path.add(gn);
+					pathIndex.add(index);
+					cur = gn.children.get(index);
 				}
-				else
+				
+				curNode = (LeafNode)cur;
+				if(low != null)
 				{
-					return false;
+					curIndex = searchLeaf(curNode, low);
+					if(curIndex < 0)
+						curIndex = -(curIndex + 1);
 				}
+				
+				skipExhausted();
 			}
-
 			
-//			  Returns an iterator which iterates over the elements in this Set.
-			public Iterator<Entry<K, V>> iterator()
-			{
-				return new EntrySetIterator();
-			}
-//			  Removes the specified entry from this set.
-			 
-//			  Returns the number of elements in this set.
-			public int size()
+//			  Moves past the end of the current leaf to the first key of the next one, if needed.
+			private void skipExhausted()
 			{
-				if(low == null && high == null)
-					return BPlusTree.this.size();
-				else
+				while(curNode != null && curIndex >= curNode.keys.size())
 				{
-					int count = 0;
-					for(Entry<K,V> e : entrySet())
+					// Climb to the lowest guide node which still has a child to the right.
+					int level = path.size() - 1;
+					while(level >= 0 && pathIndex.get(level) + 1 >= path.get(level).children.size())
+						level--;
+					
+					if(level < 0)
 					{
-						e = e == null ? null : null; // this line exists only to get rid of the "e is not used" warning.
-						count++;
+						curNode = null;
+						return;
 					}
 					
-					return count;
+					// Then descend along the leftmost children.
+					pathIndex.set(level, pathIndex.get(level) + 1);
+					Node cur = path.get(level).children.get(pathIndex.get(level));
+					for(level++; level < path.size(); level++)
+					{
+						GuideNode gn = (GuideNode)cur;
+						path.set(level, gn);
+						pathIndex.set(level, 0);
+						cur = gn.children.get(0);
+					}
+					
+					curNode = (LeafNode)cur;
+					curIndex = 0;
 				}
 			}
 			
+//			  Returs whether there are any entries left in the iteration.
+			public boolean hasNext()
+			{
+				return curNode != null && (high == null || mComp.compare(curNode.keys.get(curIndex), high) < 0);
+			}
 			
-//			  Iterates through all of the entries in the set.
-			private class EntrySetIterator implements Iterator<Entry<K,V>>
+//			  Returns the next entry in the iteration.
+			public Entry<K,V> next()
 			{
-				private int modCount;
-				
-				private LeafNode curNode;
-				private int curIndex = 0;
-				private BPTEntry lastEntry = null;
-				
-				
-//				  Creates a new BPTreeIterator.
-				public EntrySetIterator()
-				{
-					modCount = BPlusTree.this.mModCount;
-					curNode = BPlusTree.this.mFirstLeaf;
-					
-					// Keep getting next entry until we reach something >= low.
-					if(low != null)
-					{
-						// Find leaf node that contains the lowest allowable key.
-						Node cur = mRootNode;
-						while(cur instanceof BPlusTree.GuideNode)
-						{
-							GuideNode gn = (GuideNode)cur;
-							int index = findGuideIndex(gn, low);
-							cur = gn.children.get(index);
-						}
-
-						curNode = (LeafNode)cur;
-						
-						// We may need to skip to the next node.
-						if(mComp.compare(curNode.keys.get(curNode.keys.size() - 1), low) < 0)
-							curNode = curNode.next;
-						
-						// Find first key >= low.
-						if(curNode != null)
-						{
-							for(curIndex = 0; curIndex < curNode.keys.size() && mComp.compare(curNode.keys.get(curIndex), low) < 0; curIndex++)
-								/* empty body */;
-						}
-					}
-				}
-				
-//				  Returs whether there are any entries left in the iteration.
-				public boolean hasNext()
-				{
-					return curNode != null && curIndex < curNode.keys.size() &&
-						(high == null || mComp.compare(curNode.keys.get(curIndex), high) < 0);
-				}
+				if(!hasNext())
+					throw new NoSuchElementException();
 				
+				Entry<K,V> e = new AbstractMap.SimpleImmutableEntry<K,V>(curNode.keys.get(curIndex), (V)curNode.values.get(curIndex).toString());
+				curIndex++;
+				skipExhausted();
 				
-//				  Returns the next entry in the iteration.
-				public Entry<K,V> next()
-				{
-					// Make sure tree has not been modified.
-					if(modCount != BPlusTree.this.mModCount)
-						throw new ConcurrentModificationException();
-					
-					// No more entries?
-					if(!hasNext())
-						throw new NoSuchElementException();
-					
-					// Get entry.
-					lastEntry = new BPTEntry(curNode.keys.get(curIndex), BPlusTree.this);
-					
-					// Increment index.
-					curIndex++;
-					if(curIndex >= curNode.keys.size())
-					{
-						curNode = curNode.next;
-						curIndex = 0;
-					}
-					
-					// Return.
-					return lastEntry;
-				}
+				return e;
+			}
+			
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
 			}
 		}
 	}
 	
-	
-//	  An entry in a BPTree bound to a key and backed by the tree.
-	private class BPTEntry implements Entry<K,V>
-	{
-		private K key;
-		private BPlusTree<K,V> tree;
-		
-//		  Creates a new BPTEntry bound to the specified key and backed by the specified tree.
-		public BPTEntry(K key, BPlusTree<K,V> tree)
-		{
-			this.key = key;
-			this.tree = tree;
-		}
-		
-//		  Returns the key to which this entry is bound. 
-		public K getKey()
-		{
-			return key;
-		}
-		
-//		  Returns the value associated with this entry.
-		public V getValue()
-		{
-			return tree.get(key);
-		}
-		
-		
-//		  Sets the value associated with this entry. The BPTree will be changed to reflect the new value.
-		public V setValue(V value)
-		{
-			return tree.put(key, value);
-		}
-	}
-	
+//	  Returns an empty index tree, which keeps the fields of its records in primitive arrays.
+	  private static IntBPlusTree<IndexRecord> newIndexTree()
+	  {
+		  return IntBPlusTree.withPageSize(INDEX_PAGE_SIZE, new IndexRecordSlots());
+	  }
+	  
 	  public void createIndexTree(BPlusTree<Integer, String> pBplusTree, String pInputDataFileName, String pHDFSDataFileName) throws IOException
 	  {
-		  mIndexBplusTree = new BPlusTree<Integer, String>();
+		  createIndexTree(pBplusTree, pInputDataFileName, pHDFSDataFileName, false);
+	  }
+	  
+//	  @param pParallel Whether to write the data file and index with createIndexParallel() instead of createIndex().
+	  public void createIndexTree(BPlusTree<Integer, String> pBplusTree, String pInputDataFileName, String pHDFSDataFileName, boolean pParallel) throws IOException
+	  {
+		  mIndexBplusTree = newIndexTree();
 		  
 		  FileReader wInputDataFileReader = new FileReader("/home/jblee/PAPER/PAPER2/" + pInputDataFileName);
 		  BufferedReader wInputDataFileBufferedReader = new BufferedReader(wInputDataFileReader);
@@ -920,29 +2785,107 @@ public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
 			String wReadLine;
 			String wKeyString;
 			StringTokenizer wLineStringTokenizer;
+			
+			// lineitem files arrive sorted by orderkey, so build the tree bottom-up.
+			// The loader falls back to put() by itself if the input turns out not to be sorted.
+			BPlusTree<Integer, String>.BulkLoader wBulkLoader = pBplusTree.bulkLoader(DEFAULT_FILL_FACTOR);
 			  
 			while((wReadLine = wInputDataFileBufferedReader.readLine()) != null)
 			{
 				wLineStringTokenizer = new StringTokenizer(wReadLine, "|");
 				wKeyString = wLineStringTokenizer.nextToken();
-				pBplusTree.put(Integer.parseInt(wKeyString), wReadLine);
+				wBulkLoader.add(Integer.parseInt(wKeyString), wReadLine);
 		    }
+			
+			wBulkLoader.finish();
 			  
 			wInputDataFileBufferedReader.close();
 			wInputDataFileReader.close();
 			  
 			long wStartTime = System.currentTimeMillis();	
 			  
-			pBplusTree.createIndex(wDataFileWriter);
+			if(pParallel)
+				pBplusTree.createIndexParallel(wDataFileWriter);
+			else
+				pBplusTree.createIndex(wDataFileWriter);
+			  
+			wDataFileWriter.close();
+			
+			uploadDataFile(pHDFSDataFileName);
+			saveIndex(pHDFSDataFileName + INDEX_SIDECAR_SUFFIX, true);
+			  
+			long wEndTime   = System.currentTimeMillis();
 			  
+			long wTotalTime = wEndTime - wStartTime;
+			System.out.println("create index time : " + wTotalTime);
+	  }
+	  
+//	  Like createIndexTree, but keeps the source rows off the Java heap while they are clustered, in an
+//	  OffHeapIndexTree, instead of loading them into a BPlusTree.
+	  public void createIndexTreeOffHeap(String pInputDataFileName, String pHDFSDataFileName) throws IOException
+	  {
+		  mIndexBplusTree = newIndexTree();
+		  
+		  OffHeapIndexTree wRowTree = new OffHeapIndexTree();
+		  
+		  FileReader wInputDataFileReader = new FileReader("/home/jblee/PAPER/PAPER2/" + pInputDataFileName);
+		  BufferedReader wInputDataFileBufferedReader = new BufferedReader(wInputDataFileReader);
+		  
+			String wReadLine;
+			String wKeyString;
+			StringTokenizer wLineStringTokenizer;
+			
+			while((wReadLine = wInputDataFileBufferedReader.readLine()) != null)
+			{
+				wLineStringTokenizer = new StringTokenizer(wReadLine, "|");
+				wKeyString = wLineStringTokenizer.nextToken();
+				wRowTree.appendRow(Integer.parseInt(wKeyString), wReadLine);
+			}
+			
+			wInputDataFileBufferedReader.close();
+			wInputDataFileReader.close();
+			
+			long wStartTime = System.currentTimeMillis();
+			
+			// Write each key's rows in key order and index them, as LeafNode.createIndex does.
+			FileWriter wDataFileWriter = new FileWriter("/home/jblee/PAPER/PAPER2/" + pHDFSDataFileName);
+			OffHeapIndexTree.Cursor wCursor = wRowTree.cursor();
+			while(wCursor.hasNext())
+			{
+				wCursor.next();
+				String wRows = wCursor.rows();
+				
+				wDataFileWriter.write(wRows);
+				wDataFileWriter.write('\n');
+				
+				int wLength = byteLength(wRows, 0, wRows.length());
+				indexRows(wCursor.key(), mOffset, wLength);
+				mOffset += wLength + 1;
+			}
+			finishIndex();
 			wDataFileWriter.close();
 			
+			uploadDataFile(pHDFSDataFileName);
+			saveIndex(pHDFSDataFileName + INDEX_SIDECAR_SUFFIX, true);
+			
+			long wEndTime   = System.currentTimeMillis();
+			
+			long wTotalTime = wEndTime - wStartTime;
+			System.out.println("create index time : " + wTotalTime);
+			System.out.println(wRowTree.memoryReport());
+	  }
+	  
+//	  Copies the local data file to PAPER/<name> on HDFS.
+	  private void uploadDataFile(String pHDFSDataFileName) throws IOException
+	  {
 			FileInputStream wDataFileInputStream = new FileInputStream("/home/jblee/PAPER/PAPER2/" + pHDFSDataFileName);
 			BufferedInputStream wDataFileBufferedBufferedInputStream = new BufferedInputStream(wDataFileInputStream);
 
 			mHadoopConf = new Configuration();
 			mHDFS = FileSystem.get(mHadoopConf);
 			mHadoopDataFileNamePath = new Path("PAPER/" + pHDFSDataFileName);  
+			mDataFileName = pHDFSDataFileName;
+			setDataStore(null);
 			FSDataOutputStream wHadoopOutputStream = mHDFS.create(mHadoopDataFileNamePath);
 			
 			int wReadBytes;
@@ -957,63 +2900,314 @@ public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
 
 			wDataFileBufferedBufferedInputStream.close();
 			wDataFileInputStream.close();
-			  
-			long wEndTime   = System.currentTimeMillis();
-			  
-			long wTotalTime = wEndTime - wStartTime;
-			System.out.println("create index time : " + wTotalTime);
 	  }
 	  
-	  public void searchData(int pSearchKey) throws IOException
+//	  Writes the index to the specified empty store, in the IndexFile format, so that a later process can
+//	  loadIndex() it instead of running createIndexTree again.
+//	  @throws IllegalStateException thrown if there is no index, or its data file has not been uploaded to HDFS.
+	  public void saveIndex(PageStore pIndexStore) throws IOException, IllegalStateException
 	  {
-		  String wIndexData;
-		  String[] wIndexDataArray;
-		  int wKeyIndexData;
-		  String wDataFileNameIndexData;
-		  Long wOffsetIndexData;
-		  int wLengthIndexData;
+		  if(mIndexBplusTree == null)
+			  throw new IllegalStateException("no index");
+		  if(mHDFS == null)
+			  throw new IllegalStateException("data file not uploaded");
 		  
-		  long wStartTime = System.currentTimeMillis();	
+		  // The index records the data file's length and modification time, so a later load can tell it has changed.
+		  FileStatus wDataFileStatus = mHDFS.getFileStatus(mHadoopDataFileNamePath);
+		  IndexFile.DataFile wDataFile = new IndexFile.DataFile(mDataFileName, wDataFileStatus.getLen(), wDataFileStatus.getModificationTime());
 		  
-		  wIndexData = mIndexBplusTree.get(pSearchKey);
-
-		  if(wIndexData != null)
+		  IndexFile.write(mIndexBplusTree, mSparseBlockBytes, Collections.singletonList(wDataFile), pIndexStore);
+	  }
+	  
+//	  Writes the index to /home/jblee/PAPER/PAPER2/<name>, or to PAPER/<name> on HDFS.
+	  public void saveIndex(String pIndexFileName, boolean pOnHDFS) throws IOException
+	  {
+		  long wStartTime = System.currentTimeMillis();
+		  
+		  PageStore wIndexStore;
+		  if(pOnHDFS)
+			  wIndexStore = HdfsPageStore.create(FileSystem.get(new Configuration()), new Path("PAPER/" + pIndexFileName), INDEX_PAGE_SIZE);
+		  else
+			  wIndexStore = MappedFilePageStore.create(new File("/home/jblee/PAPER/PAPER2/" + pIndexFileName), INDEX_PAGE_SIZE);
+		  
+		  try
+		  {
+			  saveIndex(wIndexStore);
+		  }
+		  finally
 		  {
-			  wIndexDataArray = wIndexData.split(",");
+			  wIndexStore.close();
+		  }
+		  
+		  long wEndTime   = System.currentTimeMillis();
+		  
+		  long wTotalTime = wEndTime - wStartTime;
+		  System.out.println("save index time : " + wTotalTime);
+	  }
+	  
+//	  Replaces the index with one written by saveIndex(), and reads the data file it was built over from HDFS
+//	  from now on.
+//	  @throws IOException thrown if the index cannot be read, or the data file has changed since it was indexed.
+	  public void loadIndex(PageStore pIndexStore) throws IOException
+	  {
+		  loadIndex(pIndexStore, null);
+	  }
+	  
+//	  @param pHDFSDataFileName Data file to read, instead of the one named in the index, or null.
+	  private void loadIndex(PageStore pIndexStore, String pHDFSDataFileName) throws IOException
+	  {
+		  IntBPlusTree<IndexRecord> wIndexBplusTree = newIndexTree();
+		  IndexFile.Footer wFooter = IndexFile.read(pIndexStore, wIndexBplusTree);
 		  
-			  wKeyIndexData = Integer.parseInt(wIndexDataArray[0].substring(1));
-			  wDataFileNameIndexData = wIndexDataArray[1];
-			  wOffsetIndexData = Long.parseLong(wIndexDataArray[2]);
-			  wLengthIndexData = Integer.parseInt(wIndexDataArray[3].substring(0, wIndexDataArray[3].length()-1));
+		  IndexFile.DataFile wDataFile = wFooter.dataFiles.get(mDataFileId);
+		  if(pHDFSDataFileName != null)
+			  wDataFile = new IndexFile.DataFile(pHDFSDataFileName, wDataFile.length, wDataFile.modificationTime);
+		  useDataFile(wDataFile);
 		  
-			  int wReadBytes;
-			  int wDividLengthIndexData = wLengthIndexData/1024;
-			  int wModLengthIndexData = wLengthIndexData%1024;
-			  char[] wHDFSReadBuffer = new char[1024];
-			  StringBuilder wHDFSReadResultBuilder = new StringBuilder();
+		  mIndexBplusTree = wIndexBplusTree;
+		  mSparseBlockBytes = wFooter.blockBytes;
+		  closePagedIndex();
+	  }
+	  
+//	  Loads the index from /home/jblee/PAPER/PAPER2/<name>, or from PAPER/<name> on HDFS.
+	  public void loadIndex(String pIndexFileName, boolean pOnHDFS) throws IOException
+	  {
+		  long wStartTime = System.currentTimeMillis();
 		  
-			  InputStreamReader wHadoopInputStreamReader = new InputStreamReader(mHDFS.open(mHadoopDataFileNamePath));
-			  BufferedReader wHadoopInputBufferedReader = new BufferedReader(wHadoopInputStreamReader);
-
-			  wHadoopInputBufferedReader.skip(wOffsetIndexData);
+		  PageStore wIndexStore;
+		  if(pOnHDFS)
+			  wIndexStore = HdfsPageStore.open(FileSystem.get(new Configuration()), new Path("PAPER/" + pIndexFileName), INDEX_PAGE_SIZE);
+		  else
+			  wIndexStore = MappedFilePageStore.open(new File("/home/jblee/PAPER/PAPER2/" + pIndexFileName), INDEX_PAGE_SIZE);
+		  
+		  try
+		  {
+			  loadIndex(wIndexStore);
+		  }
+		  finally
+		  {
+			  wIndexStore.close();
+		  }
+		  
+		  long wEndTime   = System.currentTimeMillis();
+		  
+		  long wTotalTime = wEndTime - wStartTime;
+		  System.out.println("load index time : " + wTotalTime + " (" + mIndexBplusTree.size() + " keys)");
+	  }
+	  
+//	  Searches the index file /home/jblee/PAPER/PAPER2/<name> in place, through a memory mapping, instead of
+//	  loading it onto the heap, and reads the data file it was built over from HDFS from now on.
+	  public void openMappedIndex(String pIndexFileName) throws IOException
+	  {
+		  usePagedIndex(PagedIndex.open(new File("/home/jblee/PAPER/PAPER2/" + pIndexFileName)), null);
+	  }
+	  
+//	  Searches the specified index in place from now on, and reads the data file it was built over from HDFS.
+//	  @param pHDFSDataFileName Data file to read, instead of the one named in the index, or null.
+	  private void usePagedIndex(PagedIndex pPagedIndex, String pHDFSDataFileName) throws IOException
+	  {
+		  try
+		  {
+			  IndexFile.DataFile wDataFile = pPagedIndex.footer().dataFiles.get(mDataFileId);
+			  if(pHDFSDataFileName != null)
+				  wDataFile = new IndexFile.DataFile(pHDFSDataFileName, wDataFile.length, wDataFile.modificationTime);
+			  useDataFile(wDataFile);
+		  }
+		  catch(IOException e)
+		  {
+			  pPagedIndex.close();
+			  throw e;
+		  }
+		  
+		  closePagedIndex();
+		  mPagedIndex = pPagedIndex;
+		  mIndexBplusTree = null;
+		  mSparseBlockBytes = pPagedIndex.footer().blockBytes;
+	  }
+	  
+//	  Starts answering searchData for the existing data file PAPER/<name> on HDFS, from the index sidecar
+//	  createIndexTree wrote next to it, without rebuilding the index.
+//	  @throws IOException thrown if there is no sidecar, it is of an unknown format version, or the data file
+//	  has changed since it was indexed.
+	  public void openDataFile(String pHDFSDataFileName) throws IOException
+	  {
+		  openDataFile(pHDFSDataFileName, false);
+	  }
+	  
+//	  @param pInPlace Whether to search the sidecar in place on HDFS, a page at a time, instead of loading it
+//	  onto the heap, so that opening takes no time however large the index is.
+	  public void openDataFile(String pHDFSDataFileName, boolean pInPlace) throws IOException
+	  {
+		  long wStartTime = System.currentTimeMillis();
+		  
+		  PageStore wIndexStore = HdfsPageStore.open(FileSystem.get(new Configuration()), new Path("PAPER/" + pHDFSDataFileName + INDEX_SIDECAR_SUFFIX), INDEX_PAGE_SIZE);
+		  if(pInPlace)
+		  {
+			  PagedIndex wPagedIndex;
+			  try
+			  {
+				  wPagedIndex = PagedIndex.open(wIndexStore);
+			  }
+			  catch(IOException e)
+			  {
+				  wIndexStore.close();
+				  throw e;
+			  }
+			  usePagedIndex(wPagedIndex, pHDFSDataFileName);
+		  }
+		  else
+		  {
+			  try
+			  {
+				  loadIndex(wIndexStore, pHDFSDataFileName);
+			  }
+			  finally
+			  {
+				  wIndexStore.close();
+			  }
+		  }
+		  
+		  long wEndTime   = System.currentTimeMillis();
+		  
+		  long wTotalTime = wEndTime - wStartTime;
+		  long wKeyCount = pInPlace ? mPagedIndex.size() : mIndexBplusTree.size();
+		  System.out.println("open data file time : " + wTotalTime + " (" + wKeyCount + " keys)");
+	  }
+	  
+	  private void closePagedIndex() throws IOException
+	  {
+		  if(mPagedIndex != null)
+		  {
+			  mPagedIndex.close();
+			  mPagedIndex = null;
+		  }
+	  }
+	  
+//	  Reads the data file PAPER/<name> on HDFS from now on, after checking that it is still the file an index
+//	  recorded.
+//	  @throws IOException thrown if the data file's length or modification time differs from the recorded ones.
+	  private void useDataFile(IndexFile.DataFile pDataFile) throws IOException
+	  {
+		  Configuration wHadoopConf = new Configuration();
+		  FileSystem wHDFS = FileSystem.get(wHadoopConf);
+		  Path wHadoopDataFileNamePath = new Path("PAPER/" + pDataFile.name);
+		  
+		  FileStatus wDataFileStatus = wHDFS.getFileStatus(wHadoopDataFileNamePath);
+		  if(!pDataFile.matches(wDataFileStatus.getLen(), wDataFileStatus.getModificationTime()))
+			  throw new IOException("index is stale: " + wHadoopDataFileNamePath + " has changed since it was indexed");
+		  
+		  mDataFileName = pDataFile.name;
+		  mHadoopConf = wHadoopConf;
+		  mHDFS = wHDFS;
+		  mHadoopDataFileNamePath = wHadoopDataFileNamePath;
+		  setDataStore(null);
+	  }
 
-			  for(int i=0; i < wDividLengthIndexData+1; i++)
+	  
+//	  Reads the clustered data file from the specified store from now on, instead of from its copy on HDFS.
+	  public void setDataStore(PageStore pDataStore) throws IOException
+	  {
+		  if(mDataStore != null)
+			  mDataStore.close();
+		  mDataStore = pDataStore;
+	  }
+	  
+//	  Reads the clustered data file from the local copy createIndexTree left behind, through a memory mapping.
+	  public void useLocalDataFile(String pHDFSDataFileName) throws IOException
+	  {
+		  setDataStore(MappedFilePageStore.open(new File("/home/jblee/PAPER/PAPER2/" + pHDFSDataFileName), DATA_PAGE_SIZE));
+	  }
+	  
+//	  Returns the store searchData reads the data file from, opening the uploaded HDFS file if no other store was set.
+	  private PageStore dataStore() throws IOException
+	  {
+		  if(mDataStore == null)
+			  mDataStore = HdfsPageStore.open(mHDFS, mHadoopDataFileNamePath, DATA_PAGE_SIZE);
+		  
+		  return mDataStore;
+	  }
+	  
+//	  Finds where searchData reads the rows of a key: the key's own record in a dense index, or the record of
+//	  the block that would hold the key in a sparse one. The offset and length go to slot pSlot of the arrays.
+//	  @return false if the index has no such record.
+	  private boolean lookupIndex(int pSearchKey, long[] pOffsets, int[] pLengths, int pSlot) throws IOException
+	  {
+		  if(mIndexBplusTree != null)
+		  {
+			  boolean wFound = mSparseBlockBytes > 0 ? mIndexBplusTree.floor(pSearchKey, mIndexRecord) : mIndexBplusTree.get(pSearchKey, mIndexRecord);
+			  if(!wFound)
+				  return false;
+			  
+			  pOffsets[pSlot] = mIndexRecord.offset();
+			  pLengths[pSlot] = mIndexRecord.length();
+		  }
+		  else
+		  {
+			  long wRecordPosition = mSparseBlockBytes > 0 ? mPagedIndex.floor(pSearchKey) : mPagedIndex.find(pSearchKey);
+			  if(wRecordPosition < 0)
+				  return false;
+			  
+			  pOffsets[pSlot] = mPagedIndex.offset(wRecordPosition);
+			  pLengths[pSlot] = mPagedIndex.length(wRecordPosition);
+		  }
+		  
+		  return true;
+	  }
+	  
+//	  Returns the rows of the specified key in a block of a sparse index, or null if the block has none.
+//	  Rows are clustered by key, so the scan stops at the first row of a greater key.
+	  private static String scanBlock(String pBlock, int pSearchKey)
+	  {
+		  StringBuilder wRowsBuilder = null;
+		  
+		  int wRowStart = 0;
+		  while(wRowStart < pBlock.length())
+		  {
+			  int wRowEnd = pBlock.indexOf('\n', wRowStart);
+			  if(wRowEnd < 0)
+				  wRowEnd = pBlock.length();
+			  
+			  int wKeyEnd = pBlock.indexOf('|', wRowStart);
+			  int wRowKey = Integer.parseInt(pBlock.substring(wRowStart, wKeyEnd < 0 || wKeyEnd > wRowEnd ? wRowEnd : wKeyEnd));
+			  if(wRowKey > pSearchKey)
+				  break;
+			  
+			  if(wRowKey == pSearchKey)
 			  {
-				  if(wDividLengthIndexData == i)
-				  {
-					  wReadBytes = wHadoopInputBufferedReader.read(wHDFSReadBuffer, 0, wModLengthIndexData);
-				  }
+				  if(wRowsBuilder == null)
+					  wRowsBuilder = new StringBuilder();
 				  else
-				  {
-					  wReadBytes = wHadoopInputBufferedReader.read(wHDFSReadBuffer, 0, 1024);
-				  }
-				  wHDFSReadResultBuilder.append(wHDFSReadBuffer, 0, wReadBytes);
+					  wRowsBuilder.append('\n');
+				  wRowsBuilder.append(pBlock, wRowStart, wRowEnd);
 			  }
 			  
-			  wHadoopInputBufferedReader.close();
-			  wHadoopInputStreamReader.close();
-		    
-			  System.out.println(wHDFSReadResultBuilder.toString());
+			  wRowStart = wRowEnd + 1;
+		  }
+		  
+		  return wRowsBuilder == null ? null : wRowsBuilder.toString();
+	  }
+	  
+	  public void searchData(int pSearchKey) throws IOException
+	  {
+		  long[] wOffsetIndexData = new long[1];
+		  int[] wLengthIndexData = new int[1];
+		  String wHDFSReadResult = null;
+		  
+		  long wStartTime = System.currentTimeMillis();	
+		  
+		  if(lookupIndex(pSearchKey, wOffsetIndexData, wLengthIndexData, 0))
+		  {
+			  byte[] wDataBytes = new byte[wLengthIndexData[0]];
+			  dataStore().read(wOffsetIndexData[0], wDataBytes, 0, wLengthIndexData[0]);
+			  
+			  wHDFSReadResult = new String(wDataBytes);
+			  if(mSparseBlockBytes > 0)
+				  wHDFSReadResult = scanBlock(wHDFSReadResult, pSearchKey);
+		  }
+
+		  if(wHDFSReadResult != null)
+		  {
+			  System.out.println(wHDFSReadResult);
 			  
 				long wEndTime   = System.currentTimeMillis();
 				  
@@ -1027,6 +3221,104 @@ public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
 		  
 	  }
 	    
+	  //  Searches the data of many keys at once.
+	  //  A dense heap index is probed with one getAll() call, any other index key by key, and the hits are read
+	  //  from the data store in offset order, so neighbouring rows come from the same pages. Keys sharing a
+	  //  block of a sparse index read the block once.
+	  public void searchData(Collection<Integer> pSearchKeys) throws IOException
+	  {
+		  long wStartTime = System.currentTimeMillis();
+		  
+		  int[] wSearchKeys = new int[pSearchKeys.size()];
+		  int wKeyCount = 0;
+		  for(Integer wSearchKey : pSearchKeys)
+			  wSearchKeys[wKeyCount++] = wSearchKey;
+		  
+		  // Sort the hits by offset.
+		  final long[] wOffsetIndexData = new long[wSearchKeys.length];
+		  final int[] wLengthIndexData = new int[wSearchKeys.length];
+		  List<Integer> wHits = new ArrayList<Integer>();
+		  if(mIndexBplusTree != null && mSparseBlockBytes == 0)
+		  {
+			  // The records go straight from the leaves into the arrays.
+			  final boolean[] wFound = new boolean[wSearchKeys.length];
+			  mIndexBplusTree.getAll(wSearchKeys, new IntBPlusTree.SlotReader<IndexRecord>()
+			  {
+				  public void read(int pPosition, IntBPlusTree.LeafSlots<IndexRecord> pSlots, int pIndex)
+				  {
+					  wOffsetIndexData[pPosition] = IndexRecordSlots.offset(pSlots, pIndex);
+					  wLengthIndexData[pPosition] = IndexRecordSlots.length(pSlots, pIndex);
+					  wFound[pPosition] = true;
+				  }
+			  });
+			  for(int i = 0; i < wSearchKeys.length; i++)
+			  {
+				  if(wFound[i])
+					  wHits.add(i);
+			  }
+		  }
+		  else
+		  {
+			  for(int i = 0; i < wSearchKeys.length; i++)
+			  {
+				  if(lookupIndex(wSearchKeys[i], wOffsetIndexData, wLengthIndexData, i))
+					  wHits.add(i);
+			  }
+		  }
+		  Collections.sort(wHits, new Comparator<Integer>()
+		  {
+			  public int compare(Integer a, Integer b)
+			  {
+				  return Long.compare(wOffsetIndexData[a], wOffsetIndexData[b]);
+			  }
+		  });
+		  
+		  int wFoundCount = 0;
+		  String[] wHDFSReadResult = new String[wSearchKeys.length];
+		  if(!wHits.isEmpty())
+		  {
+			  PageStore wDataStore = dataStore();
+			  
+			  long wPreviousOffset = -1;
+			  String wPreviousResult = null;
+			  for(int wKeyPosition : wHits)
+			  {
+				  long wOffset = wOffsetIndexData[wKeyPosition];
+				  
+				  // The same key asked for twice, or another key of the same block.
+				  if(wOffset != wPreviousOffset)
+				  {
+					  byte[] wDataBytes = new byte[wLengthIndexData[wKeyPosition]];
+					  wDataStore.read(wOffset, wDataBytes, 0, wDataBytes.length);
+					  
+					  wPreviousOffset = wOffset;
+					  wPreviousResult = new String(wDataBytes);
+				  }
+				  
+				  if(mSparseBlockBytes > 0)
+					  wHDFSReadResult[wKeyPosition] = scanBlock(wPreviousResult, wSearchKeys[wKeyPosition]);
+				  else
+					  wHDFSReadResult[wKeyPosition] = wPreviousResult;
+				  
+				  if(wHDFSReadResult[wKeyPosition] != null)
+					  wFoundCount++;
+			  }
+		  }
+		  
+		  for(int i = 0; i < wSearchKeys.length; i++)
+		  {
+			  if(wHDFSReadResult[i] != null)
+				  System.out.println(wHDFSReadResult[i]);
+			  else
+				  System.out.println("no data : " + wSearchKeys[i]);
+		  }
+		  
+		  long wEndTime   = System.currentTimeMillis();
+		  
+		  long wTotalTime = wEndTime - wStartTime;
+		  System.out.println("search data time : " + wTotalTime + " (" + wFoundCount + " of " + wSearchKeys.length + " keys found)");
+	  }
+	    
 	  public static void main(String[] args) throws IOException {  
 			
 		  BPlusTree<Integer, String> wBplusTree = null;
@@ -1037,6 +3329,16 @@ public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
 		  { 
 			  System.out.println("1. Create Index");
 			  System.out.println("2. Search Data");
+			  System.out.println("3. Create Index (off-heap rows)");
+			  System.out.println("4. Search Data (many keys)");
+			  System.out.println("5. Create Index (parallel emission)");
+			  System.out.println("6. Read Data From Local File (memory-mapped)");
+			  System.out.println("7. Save Index");
+			  System.out.println("8. Load Index");
+			  System.out.println("9. Open Index (memory-mapped, read-only)");
+			  System.out.println("10. Open Data File (index sidecar)");
+			  System.out.println("11. Create Index (sparse)");
+			  System.out.println("12. Open Data File (index sidecar, searched in place)");
 			  wCommand = wCommandScanner.nextLine();
 		  
 			  if(wCommand.equals("1"))
@@ -1072,6 +3374,153 @@ public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
 	    	  		}
 	    	  
 			  }
+			  else if(wCommand.equals("3"))
+			  {
+				  wBplusTree = new BPlusTree<Integer, String>();
+				  
+				  System.out.println("Input Input Data File Name : ");
+				  String wInputDataFileName = wCommandScanner.nextLine();
+				  
+				  System.out.println("Input HDFS Data File Name : ");
+				  String wHDFSDataFileName = wCommandScanner.nextLine();
+				  
+				  wBplusTree.createIndexTreeOffHeap(wInputDataFileName, wHDFSDataFileName);
+			  }
+			  else if(wCommand.equals("5"))
+			  {
+				  wBplusTree = new BPlusTree<Integer, String>();
+				  
+				  System.out.println("Input Input Data File Name : ");
+				  String wInputDataFileName = wCommandScanner.nextLine();
+				  
+				  System.out.println("Input HDFS Data File Name : ");
+				  String wHDFSDataFileName = wCommandScanner.nextLine();
+				  
+				  wBplusTree.createIndexTree(wBplusTree, wInputDataFileName, wHDFSDataFileName, true);
+			  }
+			  else if(wCommand.equals("6"))
+			  {
+				  if(wBplusTree != null)
+				  {
+					  System.out.println("Input HDFS Data File Name : ");
+					  wBplusTree.useLocalDataFile(wCommandScanner.nextLine());
+				  }
+				  else
+				  {
+					  System.out.println("please create index");
+				  }
+			  }
+			  else if(wCommand.equals("7"))
+			  {
+				  if(wBplusTree != null)
+				  {
+					  System.out.println("Input Index File Name : ");
+					  String wIndexFileName = wCommandScanner.nextLine();
+					  
+					  System.out.println("Save To HDFS? (y/n) : ");
+					  wBplusTree.saveIndex(wIndexFileName, wCommandScanner.nextLine().equals("y"));
+				  }
+				  else
+				  {
+					  System.out.println("please create index");
+				  }
+			  }
+			  else if(wCommand.equals("8"))
+			  {
+				  System.out.println("Input Index File Name : ");
+				  String wIndexFileName = wCommandScanner.nextLine();
+				  
+				  System.out.println("Load From HDFS? (y/n) : ");
+				  boolean wOnHDFS = wCommandScanner.nextLine().equals("y");
+				  
+				  BPlusTree<Integer, String> wLoadedBplusTree = new BPlusTree<Integer, String>();
+				  try
+				  {
+					  wLoadedBplusTree.loadIndex(wIndexFileName, wOnHDFS);
+					  wBplusTree = wLoadedBplusTree;
+				  }
+				  catch(IOException e)
+				  {
+					  System.out.println("cannot load index : " + e.getMessage());
+				  }
+			  }
+			  else if(wCommand.equals("9"))
+			  {
+				  System.out.println("Input Index File Name : ");
+				  String wIndexFileName = wCommandScanner.nextLine();
+				  
+				  BPlusTree<Integer, String> wMappedBplusTree = new BPlusTree<Integer, String>();
+				  try
+				  {
+					  wMappedBplusTree.openMappedIndex(wIndexFileName);
+					  wBplusTree = wMappedBplusTree;
+				  }
+				  catch(IOException e)
+				  {
+					  System.out.println("cannot open index : " + e.getMessage());
+				  }
+			  }
+			  else if(wCommand.equals("10"))
+			  {
+				  System.out.println("Input HDFS Data File Name : ");
+				  String wHDFSDataFileName = wCommandScanner.nextLine();
+				  
+				  BPlusTree<Integer, String> wOpenedBplusTree = new BPlusTree<Integer, String>();
+				  try
+				  {
+					  wOpenedBplusTree.openDataFile(wHDFSDataFileName);
+					  wBplusTree = wOpenedBplusTree;
+				  }
+				  catch(IOException e)
+				  {
+					  System.out.println("cannot open data file : " + e.getMessage());
+				  }
+			  }
+			  else if(wCommand.equals("11"))
+			  {
+				  System.out.println("Input Input Data File Name : ");
+				  String wInputDataFileName = wCommandScanner.nextLine();
+				  
+				  System.out.println("Input HDFS Data File Name : ");
+				  String wHDFSDataFileName = wCommandScanner.nextLine();
+				  
+				  System.out.println("Input Block Size (KB) : ");
+				  int wBlockBytes = -1;
+				  try
+				  {
+					  wBlockBytes = Integer.parseInt(wCommandScanner.nextLine()) * 1024;
+				  }
+				  catch(NumberFormatException e)
+				  {
+				  }
+				  
+				  if(wBlockBytes > 0)
+				  {
+					  wBplusTree = new BPlusTree<Integer, String>();
+					  wBplusTree.setSparseIndex(wBlockBytes);
+					  wBplusTree.createIndexTree(wBplusTree, wInputDataFileName, wHDFSDataFileName);
+				  }
+				  else
+				  {
+					  System.out.println("input positive int type");
+				  }
+			  }
+			  else if(wCommand.equals("12"))
+			  {
+				  System.out.println("Input HDFS Data File Name : ");
+				  String wHDFSDataFileName = wCommandScanner.nextLine();
+				  
+				  BPlusTree<Integer, String> wOpenedBplusTree = new BPlusTree<Integer, String>();
+				  try
+				  {
+					  wOpenedBplusTree.openDataFile(wHDFSDataFileName, true);
+					  wBplusTree = wOpenedBplusTree;
+				  }
+				  catch(IOException e)
+				  {
+					  System.out.println("cannot open data file : " + e.getMessage());
+				  }
+			  }
 			  else if(wCommand.equals("2"))
 			  {
 				  if(wBplusTree != null)
@@ -1094,6 +3543,31 @@ public class BPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K,V>
 					  System.out.println("please create index");
 				  }
 			  }
+			  else if(wCommand.equals("4"))
+			  {
+				  if(wBplusTree != null)
+				  {
+					  System.out.println("Input Search Keys (separated by spaces or commas)");
+					  try
+					  {
+						  List<Integer> wSearchKeys = new ArrayList<Integer>();
+						  for(String wSearchKey : wCommandScanner.nextLine().trim().split("[\\s,]+"))
+						  {
+							  if(!wSearchKey.isEmpty())
+								  wSearchKeys.add(Integer.parseInt(wSearchKey));
+						  }
+						  wBplusTree.searchData(wSearchKeys);
+					  }
+					  catch(NumberFormatException e)
+					  {
+						  System.out.println("input int type");
+					  }
+				  }
+				  else
+				  {
+					  System.out.println("please create index");
+				  }
+			  }
 			  else if(wCommand.equals("q"))
 			  {
 				  wCommandScanner.close();
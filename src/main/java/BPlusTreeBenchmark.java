@@ -0,0 +1,73 @@
+import java.util.Random;
+
+//  Measures BPlusTree insert and lookup cost as the node fanout grows.
+//  usage : BPlusTreeBenchmark [key count] [fanout ...]
+
+public class BPlusTreeBenchmark
+{
+	private static final int DEFAULT_KEY_COUNT = 1000000;
+	private static final int[] DEFAULT_FANOUTS = { 4, 16, 64, 128, 256, 512, 1024 };
+
+	public static void main(String[] args)
+	{
+		int wKeyCount = DEFAULT_KEY_COUNT;
+		int[] wFanouts = DEFAULT_FANOUTS;
+
+		if(args.length > 0)
+			wKeyCount = Integer.parseInt(args[0]);
+		if(args.length > 1)
+		{
+			wFanouts = new int[args.length - 1];
+			for(int i = 1; i < args.length; i++)
+				wFanouts[i - 1] = Integer.parseInt(args[i]);
+		}
+
+		int[] wKeys = new int[wKeyCount];
+		for(int i = 0; i < wKeyCount; i++)
+			wKeys[i] = i;
+		shuffle(wKeys, new Random(42));
+
+		// Warm up the JIT before measuring.
+		run(wKeys, 64, false);
+
+		System.out.println("fanout\tinsert(ns/op)\tlookup(ns/op)");
+		for(int wFanout : wFanouts)
+			run(wKeys, wFanout, true);
+	}
+
+	private static void run(int[] pKeys, int pFanout, boolean pPrint)
+	{
+		BPlusTree<Integer, String> wTree = new BPlusTree<Integer, String>(pFanout, pFanout);
+
+		long wStartTime = System.nanoTime();
+		for(int i = 0; i < pKeys.length; i++)
+			wTree.put(pKeys[i], "v");
+		long wInsertTime = System.nanoTime() - wStartTime;
+
+		int wFound = 0;
+		wStartTime = System.nanoTime();
+		for(int i = 0; i < pKeys.length; i++)
+		{
+			if(wTree.containsKey(pKeys[i]))
+				wFound++;
+		}
+		long wLookupTime = System.nanoTime() - wStartTime;
+
+		if(wFound != pKeys.length)
+			throw new IllegalStateException("lookup missed " + (pKeys.length - wFound) + " keys");
+
+		if(pPrint)
+			System.out.println(pFanout + "\t" + (wInsertTime / pKeys.length) + "\t\t" + (wLookupTime / pKeys.length));
+	}
+
+	private static void shuffle(int[] pArray, Random pRandom)
+	{
+		for(int i = pArray.length - 1; i > 0; i--)
+		{
+			int j = pRandom.nextInt(i + 1);
+			int wTemp = pArray[i];
+			pArray[i] = pArray[j];
+			pArray[j] = wTemp;
+		}
+	}
+}
@@ -0,0 +1,11 @@
+//  A sorted list of leaf keys stored in a compressed form, which can be searched without expanding its keys.
+
+public interface CompressedKeys
+{
+//	  Searches the keys, in their natural order, for the specified key.
+//	  @return The index of the key, or (-(insertion point) - 1) if it is absent.
+	int search(Object key);
+
+//	  Returns an estimate of the heap taken by this list, in bytes.
+	long heapBytes();
+}
@@ -0,0 +1,468 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+//  Implements a concurrent B+ tree as a B-link tree (Lehman and Yao).
+//  Every node carries a high key and a right link to its next sibling, so a reader or writer that arrives
+//  at a node after it has been split simply moves right instead of restarting from the root.
+//  Readers never lock. A node's keys, children/values, high key and right link are kept in one immutable
+//  NodeState that writers replace as a whole, so a reader always sees a consistent node.
+//  Writers lock the node being changed. A split node stays locked until the node above it that takes the new
+//  separator is locked, and finding that node moves right along the parent level hand over hand, so a writer
+//  holds up to three locks: the child, a parent and the parent's right sibling. Locks are always taken
+//  bottom-up and, within a level, left to right, so writers cannot deadlock.
+
+public class ConcurrentBPlusTree<K, V>
+{
+	private static final int DEFAULT_ORDER = 64;
+
+	private static final Comparator<Object> mDefaultComp = new DefaultComparator();
+
+	private final Comparator<? super K> mComp;
+	private final int mOrder;
+	private final int mLeafOrder;
+
+	private volatile Node mRootNode;
+	private final Node mFirstLeaf;
+	private final Object mRootLock = new Object();
+
+	private final AtomicInteger mSize = new AtomicInteger();
+
+//	  Creates a new ConcurrentBPlusTree with the default order and assumes that all keys implement Comparable.
+	ConcurrentBPlusTree()
+	{
+		this(mDefaultComp, DEFAULT_ORDER, DEFAULT_ORDER);
+	}
+
+//	  Creates a new ConcurrentBPlusTree and assumes that all keys implement Comparable.
+//	  @param order Order of internal guide nodes.
+//	  @param leafOrder Order of leaf nodes.
+//	  @throws IllegalArgumentException thrown if order < 3 or leafOrder < 2.
+	ConcurrentBPlusTree(int order, int leafOrder) throws IllegalArgumentException
+	{
+		this(mDefaultComp, order, leafOrder);
+	}
+
+//	  Creates a new ConcurrentBPlusTree.
+//	  @param c Comparator to use to sort objects.
+//	  @param order Order of internal guide nodes.
+//	  @param leafOrder Order of leaf nodes.
+//	  @throws IllegalArgumentException thrown if order < 3 or leafOrder < 2.
+	ConcurrentBPlusTree(Comparator<? super K> c, int order, int leafOrder) throws IllegalArgumentException
+	{
+		if(order < 3 || leafOrder < 2)
+			throw new IllegalArgumentException();
+
+		this.mComp = c;
+		this.mOrder = order;
+		this.mLeafOrder = leafOrder;
+
+		mRootNode = mFirstLeaf = new Node(0, new NodeState(new Object[0], new Object[0], null, null));
+	}
+
+//	  Returns the number of distinct keys in this tree.
+	public int size()
+	{
+		return mSize.get();
+	}
+
+	public boolean isEmpty()
+	{
+		return mSize.get() == 0;
+	}
+
+//	  Returns true if this tree contains a mapping for the specified key.
+	public boolean containsKey(Object key)
+	{
+		return get(key) != null;
+	}
+
+//	  Returns the values mapped to the specified key, or null if the key is not present.
+//	  Never blocks; the returned list is an immutable snapshot.
+	public List<V> get(Object key)
+	{
+		if(key == null)
+			throw new NullPointerException();
+
+		Node cur = mRootNode;
+		while(true)
+		{
+			NodeState state = cur.state;
+
+			// The node was split after we left its parent: the key now lives further right.
+			if(isBeyond(state, key))
+			{
+				cur = state.right;
+				continue;
+			}
+
+			if(cur.isLeaf())
+			{
+				int index = search(state.keys, key);
+				if(index < 0)
+					return null;
+				else
+					return valueList(state.slots[index]);
+			}
+
+			cur = (Node)state.slots[findGuideIndex(state.keys, key)];
+		}
+	}
+
+//	  Appends the specified value to the values mapped to the specified key.
+//	  @return The values that were mapped to the key before this call, or null if the key is new.
+	public List<V> append(K key, V value)
+	{
+		if(key == null)
+			throw new NullPointerException();
+
+		// Descend without locks, remembering the guide node we left at each level.
+		ArrayDeque<Node> path = new ArrayDeque<Node>();
+		Node cur = mRootNode;
+		while(!cur.isLeaf())
+		{
+			NodeState state = cur.state;
+			if(isBeyond(state, key))
+			{
+				cur = state.right;
+				continue;
+			}
+
+			path.push(cur);
+			cur = (Node)state.slots[findGuideIndex(state.keys, key)];
+		}
+
+		Node leaf = lockCovering(cur, key);
+		NodeState state = leaf.state;
+		int index = search(state.keys, key);
+
+		// Existing key: publish a copy of the leaf with the longer value array.
+		if(index >= 0)
+		{
+			Object[] oldValues = (Object[])state.slots[index];
+			Object[] newValues = Arrays.copyOf(oldValues, oldValues.length + 1);
+			newValues[oldValues.length] = value;
+
+			Object[] slots = state.slots.clone();
+			slots[index] = newValues;
+			leaf.state = new NodeState(state.keys, slots, state.highKey, state.right);
+			leaf.lock.unlock();
+
+			return valueList(oldValues);
+		}
+
+		index = -(index + 1);
+		Object[] keys = insert(state.keys, index, key);
+		Object[] slots = insert(state.slots, index, new Object[] { value });
+		mSize.incrementAndGet();
+
+		insertAndSplit(leaf, keys, slots, state, mLeafOrder, path);
+		return null;
+	}
+
+//	  Returns an iterator over the keys between low (inclusive) and high (exclusive) in ascending order.
+//	  Either bound may be null. The iterator never blocks and reflects each leaf as it was when reached.
+	public Iterator<Map.Entry<K, List<V>>> iterator(K low, K high)
+	{
+		return new EntryIterator(low, high);
+	}
+
+//	  Returns an iterator over every key in this tree in ascending order.
+	public Iterator<Map.Entry<K, List<V>>> iterator()
+	{
+		return new EntryIterator(null, null);
+	}
+
+//	  Publishes the new keys/slots of a locked node, splitting it if it holds more than order entries,
+//	  and posts any split to the parent level. Unlocks every node it locked, including the one passed in.
+	private void insertAndSplit(Node node, Object[] keys, Object[] slots, NodeState old, int order, ArrayDeque<Node> path)
+	{
+		while(true)
+		{
+			if(keys.length <= order)
+			{
+				node.state = new NodeState(keys, slots, old.highKey, old.right);
+				node.lock.unlock();
+				return;
+			}
+
+			// Split: publish the new right sibling before linking it in, so readers never see a dangling link.
+			int half = keys.length / 2;
+			Object[] rightKeys = Arrays.copyOfRange(keys, half, keys.length);
+			Object[] rightSlots = Arrays.copyOfRange(slots, half, slots.length);
+			Object separator = rightKeys[0];
+
+			Node newRight = new Node(node.level, new NodeState(rightKeys, rightSlots, old.highKey, old.right));
+			node.state = new NodeState(Arrays.copyOf(keys, half), Arrays.copyOf(slots, half), separator, newRight);
+
+			Node parent = lockParent(node, separator, newRight, path);
+			node.lock.unlock();
+			if(parent == null)
+				return;
+
+			// Link the new sibling into the parent right after the child that covered the separator.
+			old = parent.state;
+			int index = findGuideIndex(old.keys, separator) + 1;
+			keys = insert(old.keys, index, separator);
+			slots = insert(old.slots, index, newRight);
+
+			node = parent;
+			order = mOrder;
+		}
+	}
+
+//	  Locks and returns the node one level above the specified node that covers the separator.
+//	  If the specified node is the root, installs a new root above it instead and returns null.
+	private Node lockParent(Node node, Object separator, Node newRight, ArrayDeque<Node> path)
+	{
+		if(!path.isEmpty())
+			return lockCovering(path.pop(), separator);
+
+		synchronized(mRootLock)
+		{
+			if(mRootNode == node)
+			{
+				Object[] keys = new Object[] { null, separator };
+				Object[] slots = new Object[] { node, newRight };
+				mRootNode = new Node(node.level + 1, new NodeState(keys, slots, null, null));
+				return null;
+			}
+		}
+
+		// Someone else is growing the tree above us. The new root may not be installed yet.
+		Node cur;
+		while((cur = mRootNode).level <= node.level)
+			Thread.yield();
+
+		// Find our parent level from the new root.
+		while(cur.level > node.level + 1)
+		{
+			NodeState state = cur.state;
+			if(isBeyond(state, separator))
+				cur = state.right;
+			else
+				cur = (Node)state.slots[findGuideIndex(state.keys, separator)];
+		}
+
+		return lockCovering(cur, separator);
+	}
+
+//	  Locks the node at the same level as the specified node whose range covers the key, moving right
+//	  along the sibling links as needed. Moving right is hand over hand, so at most two nodes of this level are
+//	  locked at any moment, on top of the split child a caller posting a split still holds.
+	private Node lockCovering(Node node, Object key)
+	{
+		node.lock.lock();
+		while(true)
+		{
+			NodeState state = node.state;
+			if(!isBeyond(state, key))
+				return node;
+
+			Node right = state.right;
+			right.lock.lock();
+			node.lock.unlock();
+			node = right;
+		}
+	}
+
+//	  Returns the index to follow in a guide node for the specified key.
+	private int findGuideIndex(Object[] keys, Object key)
+	{
+		// keys[0] is only the lower bound, so search the separators from index 1.
+		int low = 1;
+		int high = keys.length - 1;
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			if(compare(key, keys[mid]) < 0)
+				high = mid - 1;
+			else
+				low = mid + 1;
+		}
+
+		return low - 1;
+	}
+
+//	  Returns the index of the specified key in a leaf's keys, or (-(insertion point) - 1) if it is absent.
+	private int search(Object[] keys, Object key)
+	{
+		int low = 0;
+		int high = keys.length - 1;
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int c = compare(key, keys[mid]);
+			if(c < 0)
+				high = mid - 1;
+			else if(c > 0)
+				low = mid + 1;
+			else
+				return mid;
+		}
+
+		return -(low + 1);
+	}
+
+//	  Returns a copy of the array with the element inserted at the specified index.
+	private static Object[] insert(Object[] array, int index, Object element)
+	{
+		Object[] result = new Object[array.length + 1];
+		System.arraycopy(array, 0, result, 0, index);
+		result[index] = element;
+		System.arraycopy(array, index, result, index + 1, array.length - index);
+		return result;
+	}
+
+//	  Wraps a leaf's value array as an immutable list.
+	@SuppressWarnings("unchecked")
+	private List<V> valueList(Object values)
+	{
+		return Collections.unmodifiableList(Arrays.asList((V[])values));
+	}
+
+//	  A node of the tree. Level 0 nodes are leaves; their slots hold value arrays. Guide nodes hold children.
+	private static class Node
+	{
+		public final int level;
+		public final ReentrantLock lock = new ReentrantLock();
+		public volatile NodeState state;
+
+		public Node(int level, NodeState state)
+		{
+			this.level = level;
+			this.state = state;
+		}
+
+		public boolean isLeaf()
+		{
+			return level == 0;
+		}
+	}
+
+//	  An immutable version of a node's contents.
+	private static class NodeState
+	{
+		public final Object[] keys;
+		public final Object[] slots;
+
+		// Exclusive upper bound of the node's key range, or null for the rightmost node of a level.
+		public final Object highKey;
+		public final Node right;
+
+		public NodeState(Object[] keys, Object[] slots, Object highKey, Node right)
+		{
+			this.keys = keys;
+			this.slots = slots;
+			this.highKey = highKey;
+			this.right = right;
+		}
+	}
+
+//	  Walks the leaf chain without locking.
+	private class EntryIterator implements Iterator<Map.Entry<K, List<V>>>
+	{
+		private final K high;
+
+		private NodeState curState;
+		private int curIndex;
+
+		public EntryIterator(K low, K high)
+		{
+			this.high = high;
+
+			Node cur = mFirstLeaf;
+			if(low != null)
+			{
+				cur = mRootNode;
+				while(true)
+				{
+					NodeState state = cur.state;
+					if(isBeyond(state, low))
+						cur = state.right;
+					else if(!cur.isLeaf())
+						cur = (Node)state.slots[findGuideIndex(state.keys, low)];
+					else
+						break;
+				}
+			}
+
+			curState = cur.state;
+			curIndex = 0;
+			if(low != null)
+			{
+				curIndex = search(curState.keys, low);
+				if(curIndex < 0)
+					curIndex = -(curIndex + 1);
+			}
+			skipEmpty();
+		}
+
+//		  Moves to the next leaf while the current one has no entries left.
+		private void skipEmpty()
+		{
+			while(curState != null && curIndex >= curState.keys.length)
+			{
+				curState = curState.right == null ? null : curState.right.state;
+				curIndex = 0;
+			}
+		}
+
+		public boolean hasNext()
+		{
+			return curState != null && (high == null || compare(curState.keys[curIndex], high) < 0);
+		}
+
+		@SuppressWarnings("unchecked")
+		public Map.Entry<K, List<V>> next()
+		{
+			if(!hasNext())
+				throw new NoSuchElementException();
+
+			K key = (K)curState.keys[curIndex];
+			List<V> values = valueList(curState.slots[curIndex]);
+
+			curIndex++;
+			skipEmpty();
+
+			return new AbstractMap.SimpleImmutableEntry<K, List<V>>(key, values);
+		}
+	}
+
+//	  Returns whether the key belongs to a node further right on the level of the node in the specified state.
+	private boolean isBeyond(NodeState state, Object key)
+	{
+		return state.highKey != null && compare(key, state.highKey) >= 0;
+	}
+
+//	  Compares two keys. Nodes keep their keys in Object arrays, so they are cast back to K here.
+	@SuppressWarnings("unchecked")
+	private int compare(Object a, Object b)
+	{
+		return mComp.compare((K)a, (K)b);
+	}
+
+//	 Casts objects to Comparable and compares them.
+	private static class DefaultComparator implements Comparator<Object>
+	{
+		/**
+		 * Casts a to Comparable and compares it to b.
+		 */
+		@SuppressWarnings("unchecked")
+		public int compare(Object a, Object b)
+		{
+			if(a == null)
+			{
+				if(b == null)
+					return 0;
+				else
+					return -1;
+			}
+			else
+			{
+				return ((Comparable<Object>)a).compareTo(b);
+			}
+		}
+	}
+}
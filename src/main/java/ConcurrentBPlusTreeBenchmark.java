@@ -0,0 +1,226 @@
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+//  Stress-tests ConcurrentBPlusTree with concurrent writers and readers, then measures throughput.
+//  usage : ConcurrentBPlusTreeBenchmark [keys per writer] [max threads]
+
+public class ConcurrentBPlusTreeBenchmark
+{
+	private static final int DEFAULT_KEYS_PER_WRITER = 200000;
+	private static final int DEFAULT_MAX_THREADS = 8;
+	private static final int BLOCK_SIZE = 1000;
+
+	public static void main(String[] args) throws InterruptedException
+	{
+		int wKeysPerWriter = DEFAULT_KEYS_PER_WRITER;
+		int wMaxThreads = DEFAULT_MAX_THREADS;
+
+		if(args.length > 0)
+			wKeysPerWriter = Integer.parseInt(args[0]);
+		if(args.length > 1)
+			wMaxThreads = Integer.parseInt(args[1]);
+
+		stress(4, 4, wKeysPerWriter, 8);
+		stress(4, 4, wKeysPerWriter, 64);
+		System.out.println("stress test passed");
+
+		System.out.println("threads\tinsert(ops/s)\tlookup(ops/s)");
+		for(int wThreads = 1; wThreads <= wMaxThreads; wThreads *= 2)
+			throughput(wThreads, wKeysPerWriter);
+	}
+
+//	  Runs writers on interleaved key ranges while readers check that every key a writer has reported
+//	  as inserted can be found. Afterwards checks size, values and iteration order.
+//	  Small orders are used as well so that splits, and splits racing with each other, happen constantly.
+	private static void stress(final int pWriters, int pReaders, final int pKeysPerWriter, int pOrder) throws InterruptedException
+	{
+		final ConcurrentBPlusTree<Integer, String> wTree = new ConcurrentBPlusTree<Integer, String>(pOrder, pOrder);
+		final AtomicInteger[] wProgress = new AtomicInteger[pWriters];
+		final AtomicInteger wFailures = new AtomicInteger();
+		final CountDownLatch wWritersDone = new CountDownLatch(pWriters);
+
+		List<Thread> wThreads = new ArrayList<Thread>();
+		for(int w = 0; w < pWriters; w++)
+		{
+			final int wWriter = w;
+			wProgress[w] = new AtomicInteger(0);
+			wThreads.add(new Thread()
+			{
+				public void run()
+				{
+					// Writer w owns keys w, w + pWriters, w + 2 * pWriters, ... It inserts them block by block,
+					// shuffled within each block, and then appends a second value to every key.
+					int[] wOrder = shuffled(BLOCK_SIZE, wWriter);
+					for(int wBlock = 0; wBlock < pKeysPerWriter; wBlock += BLOCK_SIZE)
+					{
+						for(int i = 0; i < BLOCK_SIZE; i++)
+						{
+							if(wBlock + wOrder[i] >= pKeysPerWriter)
+								continue;
+
+							int wKey = (wBlock + wOrder[i]) * pWriters + wWriter;
+							wTree.append(wKey, "a" + wKey);
+						}
+						for(int i = 0; i < BLOCK_SIZE && wBlock + i < pKeysPerWriter; i++)
+						{
+							int wKey = (wBlock + i) * pWriters + wWriter;
+							if(wTree.get(wKey) == null)
+								wFailures.incrementAndGet();
+						}
+						wProgress[wWriter].set(Math.min(wBlock + BLOCK_SIZE, pKeysPerWriter));
+					}
+					for(int i = 0; i < pKeysPerWriter; i++)
+					{
+						int wKey = i * pWriters + wWriter;
+						wTree.append(wKey, "b" + wKey);
+					}
+					wWritersDone.countDown();
+				}
+			});
+		}
+
+		for(int r = 0; r < pReaders; r++)
+		{
+			final int wSeed = r;
+			wThreads.add(new Thread()
+			{
+				public void run()
+				{
+					Random wRandom = new Random(wSeed);
+					while(wWritersDone.getCount() > 0)
+					{
+						int wWriter = wRandom.nextInt(pWriters);
+						int wPublished = wProgress[wWriter].get();
+						if(wPublished <= 0)
+							continue;
+
+						int wKey = wRandom.nextInt(wPublished) * pWriters + wWriter;
+						List<String> wValues = wTree.get(wKey);
+						if(wValues == null || !wValues.get(0).equals("a" + wKey))
+							wFailures.incrementAndGet();
+					}
+				}
+			});
+		}
+
+		for(Thread t : wThreads)
+			t.start();
+		for(Thread t : wThreads)
+			t.join();
+
+		int wTotal = pWriters * pKeysPerWriter;
+		if(wFailures.get() != 0)
+			throw new IllegalStateException(wFailures.get() + " lookups missed a published key");
+		if(wTree.size() != wTotal)
+			throw new IllegalStateException("size " + wTree.size() + " != " + wTotal);
+
+		int wExpected = 0;
+		Iterator<Map.Entry<Integer, List<String>>> it = wTree.iterator();
+		while(it.hasNext())
+		{
+			Map.Entry<Integer, List<String>> e = it.next();
+			if(e.getKey() != wExpected || e.getValue().size() != 2)
+				throw new IllegalStateException("bad entry at " + wExpected + " : " + e);
+			wExpected++;
+		}
+		if(wExpected != wTotal)
+			throw new IllegalStateException("iterated " + wExpected + " != " + wTotal);
+	}
+
+	private static void throughput(int pThreads, final int pKeysPerThread) throws InterruptedException
+	{
+		final ConcurrentBPlusTree<Integer, String> wTree = new ConcurrentBPlusTree<Integer, String>();
+		final int wThreadCount = pThreads;
+		final AtomicLong wFound = new AtomicLong();
+
+		long wInsertTime = runThreads(pThreads, new Work()
+		{
+			public void run(int pThread)
+			{
+				int[] wOrder = shuffled(pKeysPerThread, pThread);
+				for(int i = 0; i < pKeysPerThread; i++)
+					wTree.append(wOrder[i] * wThreadCount + pThread, "v");
+			}
+		});
+
+		long wLookupTime = runThreads(pThreads, new Work()
+		{
+			public void run(int pThread)
+			{
+				int[] wOrder = shuffled(pKeysPerThread, pThread + 100);
+				long wHits = 0;
+				for(int i = 0; i < pKeysPerThread; i++)
+				{
+					if(wTree.get(wOrder[i] * wThreadCount + pThread) != null)
+						wHits++;
+				}
+				wFound.addAndGet(wHits);
+			}
+		});
+
+		long wOps = (long)pThreads * pKeysPerThread;
+		if(wFound.get() != wOps)
+			throw new IllegalStateException("lookup missed " + (wOps - wFound.get()) + " keys");
+
+		System.out.println(pThreads + "\t" + (wOps * 1000000000L / wInsertTime) + "\t\t" + (wOps * 1000000000L / wLookupTime));
+	}
+
+	private interface Work
+	{
+		void run(int pThread);
+	}
+
+//	  Runs the work on the specified number of threads and returns the elapsed time in nanoseconds.
+	private static long runThreads(int pThreads, final Work pWork) throws InterruptedException
+	{
+		final CountDownLatch wStart = new CountDownLatch(1);
+		Thread[] wThreads = new Thread[pThreads];
+		for(int t = 0; t < pThreads; t++)
+		{
+			final int wThread = t;
+			wThreads[t] = new Thread()
+			{
+				public void run()
+				{
+					try
+					{
+						wStart.await();
+					}
+					catch(InterruptedException e)
+					{
+						return;
+					}
+					pWork.run(wThread);
+				}
+			};
+			wThreads[t].start();
+		}
+
+		long wStartTime = System.nanoTime();
+		wStart.countDown();
+		for(Thread t : wThreads)
+			t.join();
+
+		return System.nanoTime() - wStartTime;
+	}
+
+	private static int[] shuffled(int pCount, long pSeed)
+	{
+		int[] wArray = new int[pCount];
+		for(int i = 0; i < pCount; i++)
+			wArray[i] = i;
+
+		Random wRandom = new Random(pSeed);
+		for(int i = pCount - 1; i > 0; i--)
+		{
+			int j = wRandom.nextInt(i + 1);
+			int wTemp = wArray[i];
+			wArray[i] = wArray[j];
+			wArray[j] = wTemp;
+		}
+
+		return wArray;
+	}
+}
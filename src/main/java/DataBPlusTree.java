@@ -243,13 +243,19 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 	 */
 	private int findGuideIndex(GuideNode node, Object key)
 	{
-		for(int i = 1; i < node.keys.size(); i++)
+		// keys.get(0) is only the lower bound, so search the separators from index 1.
+		int low = 1;
+		int high = node.keys.size() - 1;
+		while(low <= high)
 		{
-			if(comp.compare(key, node.keys.get(i)) < 0)
-				return i - 1;
+			int mid = (low + high) >>> 1;
+			if(comp.compare(key, node.keys.get(mid)) < 0)
+				high = mid - 1;
+			else
+				low = mid + 1;
 		}
 		
-		return node.keys.size() - 1;
+		return low - 1;
 	}
 	
 	/**
@@ -257,13 +263,30 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 	 */
 	private int findLeafIndex(LeafNode node, Object key)
 	{
-		for(int i = 0; i < node.keys.size(); i++)
+		int index = searchLeaf(node, key);
+		return index < 0 ? -1 : index;
+	}
+	
+	/**
+	 * Returns the index of the specified key in a leaf node, or (-(insertion point) - 1) if it is absent.
+	 */
+	private int searchLeaf(LeafNode node, Object key)
+	{
+		int low = 0;
+		int high = node.keys.size() - 1;
+		while(low <= high)
 		{
-			if(comp.compare(key, node.keys.get(i)) == 0)
-				return i;
+			int mid = (low + high) >>> 1;
+			int c = comp.compare(key, node.keys.get(mid));
+			if(c < 0)
+				high = mid - 1;
+			else if(c > 0)
+				low = mid + 1;
+			else
+				return mid;
 		}
 		
-		return -1;
+		return -(low + 1);
 	}
 	
 	/**
@@ -307,6 +330,49 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 
 	}
 	
+	/**
+	 * Returns the shape of this BPTree and an estimate of the heap it retains.
+	 */
+	public TreeStats stats()
+	{
+		return stats(1.0);
+	}
+	
+	/**
+	 * Returns the shape of this BPTree and an estimate of the heap it retains.
+	 * @param sampleFraction Fraction of the leaves whose keys and values are measured, in (0, 1].
+	 * @throws IllegalArgumentException thrown if sampleFraction is not in (0, 1].
+	 */
+	public TreeStats stats(double sampleFraction) throws IllegalArgumentException
+	{
+		TreeStats stats = new TreeStats(order, leafOrder, sampleFraction);
+		collectStats(root, 0, stats);
+		return stats;
+	}
+	
+	/**
+	 * Adds the nodes under the specified node to stats.
+	 */
+	private void collectStats(Node node, int level, TreeStats stats)
+	{
+		if(node instanceof DataBPlusTree.GuideNode)
+		{
+			GuideNode gn = (GuideNode)node;
+			
+			// keys, children, prev, next and the outer tree.
+			stats.addGuide(level, gn.keys, gn.children.size(), TreeStats.fieldBytes(5, 0));
+			
+			for(Node child : gn.children)
+				collectStats(child, level + 1, stats);
+			return;
+		}
+		
+		LeafNode ln = (LeafNode)node;
+		
+		// keys, values, prev, next and the outer tree.
+		stats.addLeaf(level, ln.keys, ln.values, TreeStats.fieldBytes(5, 0));
+	}
+	
 	/**
 	 * Base class for tree nodes.
 	 */
@@ -471,7 +537,7 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 	 */
 	private class LeafNode extends Node
 	{
-		public ArrayList<ArrayList<V>> values;
+		public ArrayList<PostingList<V>> values;
 		
 		private LeafNode prev = null;
 		private LeafNode next = null;
@@ -482,7 +548,7 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 		public LeafNode()
 		{			
 			keys = new ArrayList<K>(leafOrder);
-			values = new ArrayList<ArrayList<V>>(leafOrder);
+			values = new ArrayList<PostingList<V>>(leafOrder);
 //			for(int i=0; i<leafOrder; i++)
 //			{
 //				values.add(new ArrayList<V>());
@@ -498,14 +564,9 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 			LeafNode newLeaf = null;
 			
 			// Find insert index.
-			int insertIndex = 0;
-			while(insertIndex < keys.size())
-			{
-				if(comp.compare(key, keys.get(insertIndex)) <= 0)
-					break;
-				
-				insertIndex++;
-			}
+			int insertIndex = DataBPlusTree.this.searchLeaf(this, key);
+			if(insertIndex < 0)
+				insertIndex = -(insertIndex + 1);
 			
 			if(values.size()== insertIndex)
 			{
@@ -525,18 +586,7 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 				keys.add(insertIndex, key);
 				//svalues.add(insertIndex, value);
 				
-				if(values.size()==0 || checkKey(key))
-				{
-					
-					ArrayList<V> arrayValue = new ArrayList<V>();
-					arrayValue.add(value);
-					
-					values.add(insertIndex, arrayValue);
-				}
-				else
-				{
-					values.get(insertIndex).add(value);
-				}
+				values.add(insertIndex, new PostingList<V>(value));
 				
 				// Do we need to split?
 				if(keys.size() > leafOrder)
@@ -547,7 +597,7 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 					newLeaf.values.addAll(values.subList(values.size() / 2, values.size()));
 					
 					ArrayList<K> newKeys = new ArrayList<K>(leafOrder);
-					ArrayList<ArrayList<V>> newValues = new ArrayList<ArrayList<V>>(leafOrder);
+					ArrayList<PostingList<V>> newValues = new ArrayList<PostingList<V>>(leafOrder);
 					
 					newKeys.addAll(keys.subList(0, keys.size() / 2));
 					newValues.addAll(values.subList(0, values.size() / 2));
@@ -580,19 +630,6 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 			return DataBPlusTree.this.findLeafIndex(this, key);
 		}
 		
-		public boolean checkKey(K key)
-		{
-			boolean result = false;
-			for(int i=0; i<keys.size(); i++)
-			{
-				if(key == keys.get(i))
-				{
-					return true;
-				}
-					
-			}
-			return result;
-		}
 		
 		public void printXml(StringWriter out, int indent)
 		{
@@ -605,7 +642,7 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 			for(int i = 0; i < keys.size(); i++)
 			{
 				K key = keys.get(i);
-				ArrayList<V> value = values.get(i);
+				PostingList<V> value = values.get(i);
 				
 				// Print entry.
 				for(int j = 0; j < indent + 1; j++)
@@ -626,7 +663,7 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 			for(int i = 0; i < keys.size(); i++)
 			{
 				K key = keys.get(i);
-				ArrayList<V> value = values.get(i);
+				PostingList<V> value = values.get(i);
 				
 				//int keyLength = 0;
 				// Print entry.
@@ -950,8 +987,9 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 						// Find first key >= low.
 						if(curNode != null)
 						{
-							for(curIndex = 0; curIndex < curNode.keys.size() && comp.compare(curNode.keys.get(curIndex), low) < 0; curIndex++)
-								/* empty body */;
+							curIndex = DataBPlusTree.this.searchLeaf(curNode, low);
+							if(curIndex < 0)
+								curIndex = -(curIndex + 1);
 						}
 					}
 				}
@@ -979,7 +1017,7 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 						throw new NoSuchElementException();
 					
 					// Get entry.
-					lastEntry = new BPTEntry(curNode.keys.get(curIndex), DataBPlusTree.this);
+					lastEntry = new BPTEntry(curNode.keys.get(curIndex), curNode.values.get(curIndex), DataBPlusTree.this);
 					
 					// Increment index.
 					curIndex++;
@@ -1002,14 +1040,18 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 	private class BPTEntry implements Entry<K,V>
 	{
 		private K key;
+		private PostingList<V> valueList;
 		private DataBPlusTree<K,V> tree;
+		// The value list as getValue() renders it, once it has been asked for.
+		private V renderedValue = null;
 		
 		/**
-		 * Creates a new BPTEntry bound to the specified key and backed by the specified tree.
+		 * Creates a new BPTEntry bound to the specified key and its value list in a leaf of the specified tree.
 		 */
-		public BPTEntry(K key, DataBPlusTree<K,V> tree)
+		public BPTEntry(K key, PostingList<V> valueList, DataBPlusTree<K,V> tree)
 		{
 			this.key = key;
+			this.valueList = valueList;
 			this.tree = tree;
 		}
 		
@@ -1022,11 +1064,15 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 		}
 		
 		/**
-		 * Returns the value associated with this entry.
+		 * Returns the value associated with this entry, rendered the same way get() renders it.
+		 * The value list was taken from the leaf during iteration, so the tree is not searched again, and it is
+		 * rendered once, on the first call.
 		 */
 		public V getValue()
 		{
-			return tree.get(key);
+			if(renderedValue == null)
+				renderedValue = (V)valueList.toString();
+			return renderedValue;
 		}
 		
 		/**
@@ -1034,6 +1080,7 @@ public class DataBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<K
 		 */
 		public V setValue(V value)
 		{
+			renderedValue = null;
 			return tree.put(key, value);
 		}
 	}
@@ -0,0 +1,199 @@
+import java.util.*;
+
+//  A sorted list of Integer keys stored as unsigned 16-bit deltas from a base key, 2 bytes per key instead of
+//  a reference to a boxed Integer. Dense keys such as lineitem orderkeys almost always fit; once a leaf holds
+//  keys more than 65535 apart it switches to plain ints. Keys must be added in ascending order of position,
+//  as a B+ tree leaf does, and may not be null.
+
+public class DeltaKeyList extends AbstractList<Integer> implements RandomAccess, CompressedKeys
+{
+	private static final int MAX_DELTA = Character.MAX_VALUE;
+
+	private int mBase;
+	private char[] mDeltas;
+	// Used instead of mDeltas while the keys span more than MAX_DELTA.
+	private int[] mKeys;
+	private int mSize = 0;
+
+//	  Creates an empty DeltaKeyList with room for the specified number of keys.
+	public DeltaKeyList(int capacity)
+	{
+		mDeltas = new char[Math.max(capacity, 1)];
+	}
+
+	public int size()
+	{
+		return mSize;
+	}
+
+	public Integer get(int index)
+	{
+		checkIndex(index, mSize);
+		return key(index);
+	}
+
+	private int key(int index)
+	{
+		if(mKeys != null)
+			return mKeys[index];
+		else
+			return mBase + mDeltas[index];
+	}
+
+//	  Inserts the specified key at the specified position, which must keep the list sorted.
+	public void add(int index, Integer key)
+	{
+		checkIndex(index, mSize + 1);
+		int k = key.intValue();
+
+		// An emptied list can go back to deltas.
+		if(mSize == 0 && mKeys != null)
+		{
+			mDeltas = new char[mKeys.length];
+			mKeys = null;
+		}
+
+		if(mKeys == null && !fits(k))
+			expand();
+
+		if(mKeys != null)
+		{
+			if(mSize == mKeys.length)
+				mKeys = Arrays.copyOf(mKeys, grow(mSize));
+			System.arraycopy(mKeys, index, mKeys, index + 1, mSize - index);
+			mKeys[index] = k;
+		}
+		else
+		{
+			if(mSize == mDeltas.length)
+				mDeltas = Arrays.copyOf(mDeltas, grow(mSize));
+			System.arraycopy(mDeltas, index, mDeltas, index + 1, mSize - index);
+			mDeltas[index] = (char)(k - mBase);
+		}
+
+		mSize++;
+		modCount++;
+	}
+
+	public Integer remove(int index)
+	{
+		checkIndex(index, mSize);
+		int k = key(index);
+
+		if(mKeys != null)
+			System.arraycopy(mKeys, index + 1, mKeys, index, mSize - index - 1);
+		else
+			System.arraycopy(mDeltas, index + 1, mDeltas, index, mSize - index - 1);
+
+		mSize--;
+		modCount++;
+		return k;
+	}
+
+	public Integer set(int index, Integer key)
+	{
+		Integer old = remove(index);
+		add(index, key);
+		return old;
+	}
+
+	public int search(Object key)
+	{
+		int k = ((Integer)key).intValue();
+
+		int low = 0;
+		int high = mSize - 1;
+		if(mKeys != null)
+		{
+			while(low <= high)
+			{
+				int mid = (low + high) >>> 1;
+				if(k < mKeys[mid])
+					high = mid - 1;
+				else if(k > mKeys[mid])
+					low = mid + 1;
+				else
+					return mid;
+			}
+		}
+		else
+		{
+			// Every stored key lies within base .. base + MAX_DELTA.
+			long delta = (long)k - mBase;
+			if(mSize == 0 || delta < 0)
+				return -1;
+			if(delta > MAX_DELTA)
+				return -(mSize + 1);
+
+			char d = (char)delta;
+			while(low <= high)
+			{
+				int mid = (low + high) >>> 1;
+				if(d < mDeltas[mid])
+					high = mid - 1;
+				else if(d > mDeltas[mid])
+					low = mid + 1;
+				else
+					return mid;
+			}
+		}
+
+		return -(low + 1);
+	}
+
+	public long heapBytes()
+	{
+		// modCount, base, size and the two array references.
+		long bytes = TreeStats.objectBytes(4 + 4 + 4 + 4 + 4);
+		if(mKeys != null)
+			return bytes + TreeStats.arrayBytes(mKeys.length, 4);
+		else
+			return bytes + TreeStats.arrayBytes(mDeltas.length, 2);
+	}
+	
+//	  Returns whether the specified key can be stored as a delta, moving the base down to it if needed.
+	private boolean fits(int key)
+	{
+		if(mSize == 0)
+		{
+			mBase = key;
+			return true;
+		}
+
+		// The largest delta is the last one, since the list is sorted.
+		long low = Math.min((long)mBase, key);
+		long high = Math.max((long)mBase + mDeltas[mSize - 1], key);
+		if(high - low > MAX_DELTA)
+			return false;
+
+		if(key < mBase)
+		{
+			char shift = (char)(mBase - key);
+			for(int i = 0; i < mSize; i++)
+				mDeltas[i] += shift;
+			mBase = key;
+		}
+
+		return true;
+	}
+
+//	  Switches to plain int storage.
+	private void expand()
+	{
+		mKeys = new int[mDeltas.length];
+		for(int i = 0; i < mSize; i++)
+			mKeys[i] = mBase + mDeltas[i];
+		mDeltas = null;
+	}
+
+	private static int grow(int size)
+	{
+		return size + Math.max(1, size >> 1);
+	}
+
+	private static void checkIndex(int index, int limit)
+	{
+		if(index < 0 || index >= limit)
+			throw new IndexOutOfBoundsException("Index: " + index);
+	}
+}
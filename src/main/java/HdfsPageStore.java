@@ -0,0 +1,112 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+
+//  A PageStore over an HDFS file. HDFS files are written once, front to back, so a store created for
+//  writing can only append pages, and a file can be read once it has been closed and opened again.
+//  Reads are positional, so no stream has to be skipped forward to reach a page.
+
+public class HdfsPageStore implements PageStore
+{
+	private final int mPageSize;
+	private final FSDataOutputStream mOut;
+	private final FSDataInputStream mIn;
+	private long mLength;
+
+//	  Creates a new file, replacing any existing one, and opens it for appending pages.
+//	  @throws IllegalArgumentException thrown if pageSize < 1.
+	public static HdfsPageStore create(FileSystem fs, Path path, int pageSize) throws IOException, IllegalArgumentException
+	{
+		if(pageSize < 1)
+			throw new IllegalArgumentException();
+
+		return new HdfsPageStore(pageSize, fs.create(path, true), null, 0);
+	}
+
+//	  Opens an existing file for reading.
+//	  @throws IllegalArgumentException thrown if pageSize < 1.
+	public static HdfsPageStore open(FileSystem fs, Path path, int pageSize) throws IOException, IllegalArgumentException
+	{
+		if(pageSize < 1)
+			throw new IllegalArgumentException();
+
+		long length = fs.getFileStatus(path).getLen();
+		return new HdfsPageStore(pageSize, null, fs.open(path), length);
+	}
+
+	private HdfsPageStore(int pageSize, FSDataOutputStream out, FSDataInputStream in, long length)
+	{
+		mPageSize = pageSize;
+		mOut = out;
+		mIn = in;
+		mLength = length;
+	}
+
+	public int pageSize()
+	{
+		return mPageSize;
+	}
+
+	public long pageCount()
+	{
+		return (mLength + mPageSize - 1) / mPageSize;
+	}
+
+	public long length()
+	{
+		return mLength;
+	}
+
+	public void readPage(long page, ByteBuffer dst) throws IOException
+	{
+		if(page < 0 || page >= pageCount())
+			throw new IOException("no page " + page);
+
+		long position = page * mPageSize;
+		byte[] bytes = new byte[mPageSize];
+		read(position, bytes, 0, (int)Math.min(mPageSize, mLength - position));
+		dst.put(bytes);
+	}
+
+	public void read(long position, byte[] dst, int off, int len) throws IOException
+	{
+		if(mIn == null)
+			throw new IOException("not open for reading");
+		if(position < 0 || position + len > mLength)
+			throw new IOException("read past end: " + position + " + " + len);
+
+		mIn.readFully(position, dst, off, len);
+	}
+
+	public void writePage(long page, ByteBuffer src) throws IOException
+	{
+		if(mOut == null)
+			throw new IOException("read-only");
+		if(page != pageCount())
+			throw new IOException("HDFS pages can only be appended");
+
+		byte[] bytes = new byte[mPageSize];
+		src.get(bytes, 0, Math.min(src.remaining(), mPageSize));
+		mOut.write(bytes);
+
+		mLength += mPageSize;
+	}
+
+	public void flush() throws IOException
+	{
+		if(mOut != null)
+			mOut.flush();
+	}
+
+	public void close() throws IOException
+	{
+		if(mOut != null)
+			mOut.close();
+		if(mIn != null)
+			mIn.close();
+	}
+}
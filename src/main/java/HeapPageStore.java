@@ -0,0 +1,96 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+//  A PageStore keeping every page in a byte array on the Java heap. Nothing survives the process; it is the
+//  baseline the file-backed stores are benchmarked against.
+
+public class HeapPageStore implements PageStore
+{
+	private final int mPageSize;
+	private final ArrayList<byte[]> mPages = new ArrayList<byte[]>();
+	private boolean mClosed = false;
+
+//	  Creates an empty HeapPageStore.
+//	  @throws IllegalArgumentException thrown if pageSize < 1.
+	public HeapPageStore(int pageSize) throws IllegalArgumentException
+	{
+		if(pageSize < 1)
+			throw new IllegalArgumentException();
+
+		mPageSize = pageSize;
+	}
+
+	public int pageSize()
+	{
+		return mPageSize;
+	}
+
+	public long pageCount()
+	{
+		return mPages.size();
+	}
+
+	public long length()
+	{
+		return (long)mPages.size() * mPageSize;
+	}
+
+	public void readPage(long page, ByteBuffer dst) throws IOException
+	{
+		checkOpen();
+		if(page < 0 || page >= mPages.size())
+			throw new IOException("no page " + page);
+
+		dst.put(mPages.get((int)page));
+	}
+
+	public void read(long position, byte[] dst, int off, int len) throws IOException
+	{
+		checkOpen();
+		if(position < 0 || position + len > length())
+			throw new IOException("read past end: " + position + " + " + len);
+
+		while(len > 0)
+		{
+			int inPage = (int)(position % mPageSize);
+			int n = Math.min(len, mPageSize - inPage);
+			System.arraycopy(mPages.get((int)(position / mPageSize)), inPage, dst, off, n);
+
+			position += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	public void writePage(long page, ByteBuffer src) throws IOException
+	{
+		checkOpen();
+		if(page < 0 || page > mPages.size())
+			throw new IOException("no page " + page);
+
+		byte[] bytes = new byte[mPageSize];
+		src.get(bytes, 0, Math.min(src.remaining(), mPageSize));
+
+		if(page == mPages.size())
+			mPages.add(bytes);
+		else
+			mPages.set((int)page, bytes);
+	}
+
+	public void flush()
+	{
+	}
+
+	public void close()
+	{
+		mClosed = true;
+		mPages.clear();
+	}
+
+	private void checkOpen() throws IOException
+	{
+		if(mClosed)
+			throw new IOException("closed");
+	}
+}
@@ -28,6 +28,7 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 	private Comparator comp;
 	private int order;
 	private int leafOrder;
+	private LeafKeyFormat leafKeyFormat;
 	
 	private Node root;
 	private int size = 0;
@@ -78,9 +79,40 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 	IndexBPlusTree(Comparator c, int order, int leafOrder)
 		throws IllegalArgumentException
 	{
+		this(c, order, leafOrder, LeafKeyFormat.PLAIN);
+	}
+
+	/**
+	 * Creates a new BPTree whose leaves store keys in the specified format, and assumes that all keys implement Comparable.
+	 * @param order Order of internal guide nodes.
+	 * @param leafOrder Order of leaf nodes.
+	 * @param leafKeyFormat STRING_PREFIX for String keys, INT_DELTA for Integer keys, or PLAIN.
+	 */
+	IndexBPlusTree(int order, int leafOrder, LeafKeyFormat leafKeyFormat)
+		throws IllegalArgumentException
+	{
+		this(defaultComp, order, leafOrder, leafKeyFormat);
+	}
+
+	/**
+	 * Creates a new BPTree.
+	 * @param c Comparator to use to sort objects.
+	 * @param order Order of internal guide nodes.
+	 * @param leafOrder Order of leaf nodes.
+	 * @param leafKeyFormat How leaves store their keys.
+	 * @throws IllegalArgumentException thrown if a compressed leafKeyFormat is combined with a Comparator.
+	 */
+	private IndexBPlusTree(Comparator c, int order, int leafOrder, LeafKeyFormat leafKeyFormat)
+		throws IllegalArgumentException
+	{
+		// Compressed leaves search their keys in natural order.
+		if(leafKeyFormat != LeafKeyFormat.PLAIN && !(c instanceof IndexBPlusTree.DefaultComparator))
+			throw new IllegalArgumentException();
+
 		this.comp = c;
 		this.order = order;
 		this.leafOrder = leafOrder;
+		this.leafKeyFormat = leafKeyFormat;
 		
 		root = firstLeaf = new LeafNode();
 	}
@@ -233,8 +265,32 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 			return (V)ln.values.get(index).toString();
 	}
 	/**
-	 * Removes the specified key from this map.
+	 * Removes the specified key, and every value mapped to it, from this map.
+	 * @return The removed values, rendered the same way get() renders them, or null if the key was not present.
 	 */
+	public V remove(Object key)
+	{
+		if(key == null)
+			throw new NullPointerException();
+		
+		PostingList<V> removed = root.remove(key);
+		if(removed == null)
+			return null;
+		
+		// Shrink the tree while the root guide node is down to a single child.
+		while(root instanceof IndexBPlusTree.GuideNode && ((GuideNode)root).children.size() == 1)
+		{
+			root = ((GuideNode)root).children.get(0);
+			if(root instanceof IndexBPlusTree.GuideNode)
+				root.keys.set(0, null);
+		}
+		
+		size--;
+		modCount++;
+		
+		return (V)removed.toString();
+	}
+
 
 	/**
 	 * Returns a set view of the entries mapped in this BPTree.
@@ -273,13 +329,19 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 	 */
 	private int findGuideIndex(GuideNode node, Object key)
 	{
-		for(int i = 1; i < node.keys.size(); i++)
+		// keys.get(0) is only the lower bound, so search the separators from index 1.
+		int low = 1;
+		int high = node.keys.size() - 1;
+		while(low <= high)
 		{
-			if(comp.compare(key, node.keys.get(i)) < 0)
-				return i - 1;
+			int mid = (low + high) >>> 1;
+			if(comp.compare(key, node.keys.get(mid)) < 0)
+				high = mid - 1;
+			else
+				low = mid + 1;
 		}
 		
-		return node.keys.size() - 1;
+		return low - 1;
 	}
 	
 	/**
@@ -287,13 +349,33 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 	 */
 	private int findLeafIndex(LeafNode node, Object key)
 	{
-		for(int i = 0; i < node.keys.size(); i++)
+		int index = searchLeaf(node, key);
+		return index < 0 ? -1 : index;
+	}
+	
+	/**
+	 * Returns the index of the specified key in a leaf node, or (-(insertion point) - 1) if it is absent.
+	 */
+	private int searchLeaf(LeafNode node, Object key)
+	{
+		if(node.keys instanceof CompressedKeys)
+			return ((CompressedKeys)node.keys).search(key);
+		
+		int low = 0;
+		int high = node.keys.size() - 1;
+		while(low <= high)
 		{
-			if(comp.compare(key, node.keys.get(i)) == 0)
-				return i;
+			int mid = (low + high) >>> 1;
+			int c = comp.compare(key, node.keys.get(mid));
+			if(c < 0)
+				high = mid - 1;
+			else if(c > 0)
+				low = mid + 1;
+			else
+				return mid;
 		}
 		
-		return -1;
+		return -(low + 1);
 	}
 	
 	/**
@@ -356,12 +438,55 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 		
 		root.printXml(out,tree);
 	}
+	/**
+	 * Returns the shape of this BPTree and an estimate of the heap it retains.
+	 */
+	public TreeStats stats()
+	{
+		return stats(1.0);
+	}
+	
+	/**
+	 * Returns the shape of this BPTree and an estimate of the heap it retains.
+	 * @param sampleFraction Fraction of the leaves whose keys and values are measured, in (0, 1].
+	 * @throws IllegalArgumentException thrown if sampleFraction is not in (0, 1].
+	 */
+	public TreeStats stats(double sampleFraction) throws IllegalArgumentException
+	{
+		TreeStats stats = new TreeStats(order, leafOrder, sampleFraction);
+		collectStats(root, 0, stats);
+		return stats;
+	}
+	
+	/**
+	 * Adds the nodes under the specified node to stats.
+	 */
+	private void collectStats(Node node, int level, TreeStats stats)
+	{
+		if(node instanceof IndexBPlusTree.GuideNode)
+		{
+			GuideNode gn = (GuideNode)node;
+			
+			// keys, children, prev, next and the outer tree.
+			stats.addGuide(level, gn.keys, gn.children.size(), TreeStats.fieldBytes(5, 0));
+			
+			for(Node child : gn.children)
+				collectStats(child, level + 1, stats);
+			return;
+		}
+		
+		LeafNode ln = (LeafNode)node;
+		
+		// keys, values, prev, next and the outer tree.
+		stats.addLeaf(level, ln.keys, ln.values, TreeStats.fieldBytes(5, 0));
+	}
+	
 	/**
 	 * Base class for tree nodes.
 	 */
 	private abstract class Node
 	{
-		public ArrayList<K> keys;
+		public List<K> keys;
 		
 		/**
 		 * Maps the specified key to the specified value in this Node.
@@ -369,6 +494,37 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 		 */
 		public abstract Node put(K key, V value);
 		
+		/**
+		 * Removes the specified key from this Node.
+		 * @return The value list that was mapped to the key, or null if nothing was removed.
+		 */
+		public abstract PostingList<V> remove(Object key);
+		
+		/**
+		 * Returns the fewest entries this Node may hold before it must borrow from or merge with a sibling.
+		 */
+		public abstract int minSize();
+		
+		/**
+		 * Moves the last entry of the left sibling to the front of this Node.
+		 * @param separator The parent key separating the sibling from this Node.
+		 * @return The new key separating the sibling from this Node.
+		 */
+		public abstract K borrowFromLeft(Node left, K separator);
+		
+		/**
+		 * Moves the first entry of the right sibling to the end of this Node.
+		 * @param separator The parent key separating this Node from the sibling.
+		 * @return The new key separating this Node from the sibling.
+		 */
+		public abstract K borrowFromRight(Node right, K separator);
+		
+		/**
+		 * Moves every entry of the right sibling into this Node and unlinks the sibling.
+		 * @param separator The parent key separating this Node from the sibling.
+		 */
+		public abstract void merge(Node right, K separator);
+		
 		/**
 		 * Prints this Node and all sub-Node to the specified StringWriter in XML format.
 		 */
@@ -449,10 +605,93 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 		
 		/**
 		 * Removes the specified key from this Node.
-		 * @return 0 if nothing was removed, 1 if a key was removed but Nodes did not merge,
-		 *   2 if this Node merged with its left sibling, or 3 if this Node merged with its right sibling.
+		 * Children left with too few entries borrow from or merge with their siblings.
+		 * @return The value list that was mapped to the key, or null if nothing was removed.
 		 */
-
+		public PostingList<V> remove(Object key)
+		{
+			int guideIndex = findGuideIndex(key);
+			Node child = children.get(guideIndex);
+			
+			PostingList<V> removed = child.remove(key);
+			if(removed != null && child.keys.size() < child.minSize())
+				rebalance(guideIndex);
+			
+			return removed;
+		}
+		
+		/**
+		 * Refills the child at the specified index from one of its siblings, or merges it with one.
+		 */
+		private void rebalance(int index)
+		{
+			Node child = children.get(index);
+			Node left = index > 0 ? children.get(index - 1) : null;
+			Node right = index + 1 < children.size() ? children.get(index + 1) : null;
+			
+			if(left != null && left.keys.size() > left.minSize())
+			{
+				keys.set(index, child.borrowFromLeft(left, keys.get(index)));
+			}
+			else if(right != null && right.keys.size() > right.minSize())
+			{
+				keys.set(index + 1, child.borrowFromRight(right, keys.get(index + 1)));
+			}
+			else if(left != null)
+			{
+				left.merge(child, keys.get(index));
+				keys.remove(index);
+				children.remove(index);
+			}
+			else if(right != null)
+			{
+				child.merge(right, keys.get(index + 1));
+				keys.remove(index + 1);
+				children.remove(index + 1);
+			}
+		}
+		
+		public int minSize()
+		{
+			return (order + 1) / 2;
+		}
+		
+		public K borrowFromLeft(Node left, K separator)
+		{
+			GuideNode gn = (GuideNode)left;
+			int last = gn.keys.size() - 1;
+			
+			// The old separator now guards what used to be this Node's first child.
+			keys.set(0, separator);
+			keys.add(0, gn.keys.remove(last));
+			children.add(0, gn.children.remove(last));
+			
+			return keys.get(0);
+		}
+		
+		public K borrowFromRight(Node right, K separator)
+		{
+			GuideNode gn = (GuideNode)right;
+			
+			keys.add(separator);
+			children.add(gn.children.remove(0));
+			gn.keys.remove(0);
+			
+			return gn.keys.get(0);
+		}
+		
+		public void merge(Node right, K separator)
+		{
+			GuideNode gn = (GuideNode)right;
+			
+			gn.keys.set(0, separator);
+			keys.addAll(gn.keys);
+			children.addAll(gn.children);
+			
+			next = gn.next;
+			if(next != null)
+				next.prev = this;
+		}
 		
 		/**
 		 * Returns the guide index of to use when looking for the specified key.
@@ -537,7 +776,7 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 	 */
 	private class LeafNode extends Node
 	{
-		public ArrayList<ArrayList<V>> values;
+		public ArrayList<PostingList<V>> values;
 		
 		private LeafNode prev = null;
 		private LeafNode next = null;
@@ -547,8 +786,8 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 		 */
 		public LeafNode()
 		{			
-			keys = new ArrayList<K>(leafOrder);
-			values = new ArrayList<ArrayList<V>>(leafOrder);
+			keys = leafKeyFormat.newKeyList(leafOrder);
+			values = new ArrayList<PostingList<V>>(leafOrder);
 //			for(int i=0; i<leafOrder; i++)
 //			{
 //				values.add(new ArrayList<V>());
@@ -564,14 +803,9 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 			LeafNode newLeaf = null;
 			
 			// Find insert index.
-			int insertIndex = 0;
-			while(insertIndex < keys.size())
-			{
-				if(comp.compare(key, keys.get(insertIndex)) <= 0)
-					break;
-				
-				insertIndex++;
-			}
+			int insertIndex = IndexBPlusTree.this.searchLeaf(this, key);
+			if(insertIndex < 0)
+				insertIndex = -(insertIndex + 1);
 			
 			if(values.size()== insertIndex)
 			{
@@ -591,18 +825,7 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 				keys.add(insertIndex, key);
 				//svalues.add(insertIndex, value);
 				
-				if(values.size()==0 || checkKey(key))
-				{
-					
-					ArrayList<V> arrayValue = new ArrayList<V>();
-					arrayValue.add(value);
-					
-					values.add(insertIndex, arrayValue);
-				}
-				else
-				{
-					values.get(insertIndex).add(value);
-				}
+				values.add(insertIndex, new PostingList<V>(value));
 				
 				// Do we need to split?
 				if(keys.size() > leafOrder)
@@ -612,8 +835,8 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 					newLeaf.keys.addAll(keys.subList(keys.size() / 2, keys.size()));
 					newLeaf.values.addAll(values.subList(values.size() / 2, values.size()));
 					
-					ArrayList<K> newKeys = new ArrayList<K>(leafOrder);
-					ArrayList<ArrayList<V>> newValues = new ArrayList<ArrayList<V>>(leafOrder);
+					List<K> newKeys = leafKeyFormat.newKeyList(leafOrder);
+					ArrayList<PostingList<V>> newValues = new ArrayList<PostingList<V>>(leafOrder);
 					
 					newKeys.addAll(keys.subList(0, keys.size() / 2));
 					newValues.addAll(values.subList(0, values.size() / 2));
@@ -634,9 +857,55 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 		
 		/**
 		 * Removes the specified key from this Node.
-		 * @return 0 if nothing was removed, 1 if a key was removed but Nodes did not merge,
-		 *   2 if this Node merged with its left sibling, or 3 if this Node merged with its right sibling.
+		 * @return The value list that was mapped to the key, or null if nothing was removed.
 		 */
+		public PostingList<V> remove(Object key)
+		{
+			int index = findLeafIndex(key);
+			if(index == -1)
+				return null;
+			
+			keys.remove(index);
+			return values.remove(index);
+		}
+		
+		public int minSize()
+		{
+			return (leafOrder + 1) / 2;
+		}
+		
+		public K borrowFromLeft(Node left, K separator)
+		{
+			LeafNode ln = (LeafNode)left;
+			int last = ln.keys.size() - 1;
+			
+			keys.add(0, ln.keys.remove(last));
+			values.add(0, ln.values.remove(last));
+			
+			return keys.get(0);
+		}
+		
+		public K borrowFromRight(Node right, K separator)
+		{
+			LeafNode ln = (LeafNode)right;
+			
+			keys.add(ln.keys.remove(0));
+			values.add(ln.values.remove(0));
+			
+			return ln.keys.get(0);
+		}
+		
+		public void merge(Node right, K separator)
+		{
+			LeafNode ln = (LeafNode)right;
+			
+			keys.addAll(ln.keys);
+			values.addAll(ln.values);
+			
+			next = ln.next;
+			if(next != null)
+				next.prev = this;
+		}
 		
 		/**
 		 * Returns the guide index of to use when looking for the specified key.
@@ -649,19 +918,6 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 		/**
 		 * Prints this Node and all keys to the specified StringWriter in XML format.
 		 */
-		public boolean checkKey(K key)
-		{
-			boolean result = false;
-			for(int i=0; i<keys.size(); i++)
-			{
-				if(key == keys.get(i))
-				{
-					return true;
-				}
-					
-			}
-			return result;
-		}
 		public void printXml(StringWriter out, int indent)
 		{
 			for(int i = 0; i < indent; i++)
@@ -673,7 +929,7 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 			for(int i = 0; i < keys.size(); i++)
 			{
 				K key = keys.get(i);
-				ArrayList<V> value = values.get(i);
+				PostingList<V> value = values.get(i);
 				
 				// Print entry.
 				for(int j = 0; j < indent + 1; j++)
@@ -695,7 +951,7 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 			for(int i = 0; i < keys.size(); i++)
 			{
 				K key = keys.get(i);
-				ArrayList<V> value = values.get(i);
+				PostingList<V> value = values.get(i);
 				
 				
 				//int keyLength = 0;
@@ -745,7 +1001,7 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 			for(int i = 0; i < keys.size(); i++)
 			{
 				K key = keys.get(i);
-				ArrayList<V> value = values.get(i);
+				PostingList<V> value = values.get(i);
 				
 				// Print entry.
 				try {
@@ -850,6 +1106,17 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 				throw new IllegalArgumentException();
 		}
 
+		/**
+		 * Removes the specified key from this SubMap.
+		 */
+		public V remove(Object key)
+		{
+			if(checkKey(key))
+				return IndexBPlusTree.this.remove(key);
+			else
+				return null;
+		}
+		
 		/**
 		 * Returns the Comparator used to compare keys.
 		 */
@@ -1040,8 +1307,9 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 						// Find first key >= low.
 						if(curNode != null)
 						{
-							for(curIndex = 0; curIndex < curNode.keys.size() && comp.compare(curNode.keys.get(curIndex), low) < 0; curIndex++)
-								/* empty body */;
+							curIndex = IndexBPlusTree.this.searchLeaf(curNode, low);
+							if(curIndex < 0)
+								curIndex = -(curIndex + 1);
 						}
 					}
 				}
@@ -1069,7 +1337,7 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 						throw new NoSuchElementException();
 					
 					// Get entry.
-					lastEntry = new BPTEntry(curNode.keys.get(curIndex), IndexBPlusTree.this);
+					lastEntry = new BPTEntry(curNode.keys.get(curIndex), curNode.values.get(curIndex), IndexBPlusTree.this);
 					
 					// Increment index.
 					curIndex++;
@@ -1092,14 +1360,18 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 	private class BPTEntry implements Entry<K,V>
 	{
 		private K key;
+		private PostingList<V> valueList;
 		private IndexBPlusTree<K,V> tree;
+		// The value list as getValue() renders it, once it has been asked for.
+		private V renderedValue = null;
 		
 		/**
-		 * Creates a new BPTEntry bound to the specified key and backed by the specified tree.
+		 * Creates a new BPTEntry bound to the specified key and its value list in a leaf of the specified tree.
 		 */
-		public BPTEntry(K key, IndexBPlusTree<K,V> tree)
+		public BPTEntry(K key, PostingList<V> valueList, IndexBPlusTree<K,V> tree)
 		{
 			this.key = key;
+			this.valueList = valueList;
 			this.tree = tree;
 		}
 		
@@ -1112,11 +1384,15 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 		}
 		
 		/**
-		 * Returns the value associated with this entry.
+		 * Returns the value associated with this entry, rendered the same way get() renders it.
+		 * The value list was taken from the leaf during iteration, so the tree is not searched again, and it is
+		 * rendered once, on the first call.
 		 */
 		public V getValue()
 		{
-			return tree.get(key);
+			if(renderedValue == null)
+				renderedValue = (V)valueList.toString();
+			return renderedValue;
 		}
 		
 		/**
@@ -1124,6 +1400,7 @@ public class IndexBPlusTree<K, V> extends AbstractMap<K,V> implements SortedMap<
 		 */
 		public V setValue(V value)
 		{
+			renderedValue = null;
 			return tree.put(key, value);
 		}
 	}
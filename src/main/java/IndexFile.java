@@ -0,0 +1,379 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+//  The on-disk form of an index tree, written to and read from a PageStore.
+//
+//  page 0             header: magic, format version, page size, record width
+//  pages 1 .. L       leaf pages: a record count, then that many IndexRecords of IndexRecord.BYTES bytes,
+//                     in key order
+//  pages L+1 ..       guide pages, one level after another up to the root: an entry count, then that many
+//                     (lowest key, child page) pairs
+//  last page          footer: magic, format version, record count, height, root page, leaf page count, block
+//                     size of a sparse index (0 for a dense one) and, for each data file the records' file ids
+//                     refer to, its name, length and modification time when the index was written, to tell
+//                     whether the index still describes it
+//
+//  Pages are only ever appended, so the file can be written to HDFS as well as to a local file; everything
+//  that is only known at the end, like where the root is, goes in the footer. All numbers are big-endian.
+
+public final class IndexFile
+{
+	public static final int MAGIC = 0x42504958;
+	public static final int VERSION = 1;
+	// Bytes at the start of the header that pageSize() needs.
+	public static final int HEADER_BYTES = 16;
+
+	private static final int COUNT_BYTES = 4;
+	private static final int GUIDE_ENTRY_BYTES = 4 + 4;
+
+	private IndexFile()
+	{
+	}
+
+//	  A data file as an index file records it.
+	public static class DataFile
+	{
+		public final String name;
+		public final long length;
+		public final long modificationTime;
+
+//		  Creates a DataFile.
+//		  @throws IllegalArgumentException thrown if length or modificationTime is negative.
+		public DataFile(String name, long length, long modificationTime) throws IllegalArgumentException
+		{
+			if(length < 0 || modificationTime < 0)
+				throw new IllegalArgumentException();
+
+			this.name = name;
+			this.length = length;
+			this.modificationTime = modificationTime;
+		}
+
+//		  Returns whether a data file of the specified length and modification time is still the one indexed.
+		public boolean matches(long length, long modificationTime)
+		{
+			return this.length == length && this.modificationTime == modificationTime;
+		}
+	}
+
+//	  Where the parts of an index file are, as read from its footer.
+	public static class Footer
+	{
+		public final long recordCount;
+		// Number of levels, counting the leaves.
+		public final int height;
+		public final int rootPage;
+		public final int leafPageCount;
+		// Bytes of data file a record of a sparse index covers, or 0 if every key has its own record.
+		public final int blockBytes;
+		// Indexed by file id.
+		public final List<DataFile> dataFiles;
+
+		public Footer(long recordCount, int height, int rootPage, int leafPageCount, int blockBytes, List<DataFile> dataFiles)
+		{
+			this.recordCount = recordCount;
+			this.height = height;
+			this.rootPage = rootPage;
+			this.leafPageCount = leafPageCount;
+			this.blockBytes = blockBytes;
+			this.dataFiles = Collections.unmodifiableList(new ArrayList<DataFile>(dataFiles));
+		}
+	}
+
+//	  Returns the number of records a leaf page holds.
+	public static int leafCapacity(int pageSize)
+	{
+		return (pageSize - COUNT_BYTES) / IndexRecord.BYTES;
+	}
+
+//	  Returns the number of entries a guide page holds.
+	public static int guideCapacity(int pageSize)
+	{
+		return (pageSize - COUNT_BYTES) / GUIDE_ENTRY_BYTES;
+	}
+
+//	  Returns the number of records or entries on a page read into the specified buffer.
+	public static int count(ByteBuffer page)
+	{
+		return count(page, 0);
+	}
+
+//	  Returns the number of records or entries on the page starting at position base of the buffer.
+	public static int count(ByteBuffer in, int base)
+	{
+		return in.getInt(base);
+	}
+
+//	  Returns the position of the i-th record on a leaf page, from the start of the page.
+	public static int recordPosition(int i)
+	{
+		return COUNT_BYTES + i * IndexRecord.BYTES;
+	}
+
+//	  Returns the lowest key under the i-th child of a guide page.
+	public static int guideKey(ByteBuffer page, int i)
+	{
+		return guideKey(page, 0, i);
+	}
+
+	public static int guideKey(ByteBuffer in, int base, int i)
+	{
+		return in.getInt(base + COUNT_BYTES + i * GUIDE_ENTRY_BYTES);
+	}
+
+//	  Returns the page of the i-th child of a guide page.
+	public static int guideChild(ByteBuffer page, int i)
+	{
+		return guideChild(page, 0, i);
+	}
+
+	public static int guideChild(ByteBuffer in, int base, int i)
+	{
+		return in.getInt(base + COUNT_BYTES + i * GUIDE_ENTRY_BYTES + 4);
+	}
+
+//	  Returns the page size an index file was written with, from the first bytes of its header.
+//	  @throws IOException thrown if the bytes are not the start of an index file.
+	public static int pageSize(ByteBuffer header) throws IOException
+	{
+		if(header.getInt(0) != MAGIC)
+			throw new IOException("not an index file");
+
+		return header.getInt(8);
+	}
+
+//	  Writes the specified tree to an empty store.
+//	  @param blockBytes Bytes of data file a record covers if the tree is a sparse index, else 0.
+//	  @param dataFiles The data files, indexed by the records' file ids.
+//	  @throws IOException thrown if the store is not empty, its pages are too small, or it cannot be written.
+	public static void write(IntBPlusTree<IndexRecord> tree, int blockBytes, List<DataFile> dataFiles, PageStore out) throws IOException
+	{
+		int pageSize = out.pageSize();
+		if(out.pageCount() != 0)
+			throw new IOException("index store is not empty");
+		if(leafCapacity(pageSize) < 1 || guideCapacity(pageSize) < 2)
+			throw new IOException("page size too small: " + pageSize);
+		if(blockBytes < 0)
+			throw new IOException("negative block size: " + blockBytes);
+
+		ByteBuffer page = ByteBuffer.allocate(pageSize);
+		page.putInt(MAGIC);
+		page.putInt(VERSION);
+		page.putInt(pageSize);
+		page.putInt(IndexRecord.BYTES);
+		page.flip();
+		out.writePage(0, page);
+
+		// Leaves, remembering the lowest key and the page of each.
+		int leafCapacity = leafCapacity(pageSize);
+		int[] lowKeys = new int[16];
+		int[] pages = new int[16];
+		int pageCount = 0;
+		long recordCount = 0;
+
+		page.clear();
+		page.putInt(0);
+		int count = 0;
+		int lowKey = 0;
+
+		IntBPlusTree<IndexRecord>.Cursor cursor = tree.cursor();
+		IndexRecordSlots.Holder record = new IndexRecordSlots.Holder();
+		while(cursor.hasNext())
+		{
+			cursor.next();
+			if(count == leafCapacity)
+			{
+				if(pageCount == pages.length)
+				{
+					lowKeys = Arrays.copyOf(lowKeys, pageCount * 2);
+					pages = Arrays.copyOf(pages, pageCount * 2);
+				}
+				lowKeys[pageCount] = lowKey;
+				pages[pageCount++] = writePage(page, count, out);
+				page.clear();
+				page.putInt(0);
+				count = 0;
+			}
+
+			if(count == 0)
+				lowKey = cursor.key();
+			cursor.read(record);
+			IndexRecord.write(cursor.key(), record.fileId(), record.offset(), record.length(), page);
+			count++;
+			recordCount++;
+		}
+
+		// The last leaf, which is also the only one, and empty, for an empty tree.
+		if(pageCount == pages.length)
+		{
+			lowKeys = Arrays.copyOf(lowKeys, pageCount + 1);
+			pages = Arrays.copyOf(pages, pageCount + 1);
+		}
+		lowKeys[pageCount] = lowKey;
+		pages[pageCount++] = writePage(page, count, out);
+		int leafPageCount = pageCount;
+
+		// Guide levels, each one over the pages of the level below, until a level fits on one page.
+		int guideCapacity = guideCapacity(pageSize);
+		int height = 1;
+		while(pageCount > 1)
+		{
+			int levelCount = 0;
+			for(int from = 0; from < pageCount; from += guideCapacity)
+			{
+				int to = Math.min(from + guideCapacity, pageCount);
+
+				page.clear();
+				page.putInt(0);
+				for(int i = from; i < to; i++)
+				{
+					page.putInt(lowKeys[i]);
+					page.putInt(pages[i]);
+				}
+
+				// The level being built never outruns the one it reads, so it can share the arrays.
+				lowKeys[levelCount] = lowKeys[from];
+				pages[levelCount++] = writePage(page, to - from, out);
+			}
+
+			pageCount = levelCount;
+			height++;
+		}
+
+		page.clear();
+		page.putInt(MAGIC);
+		page.putInt(VERSION);
+		page.putLong(recordCount);
+		page.putInt(height);
+		page.putInt(pages[0]);
+		page.putInt(leafPageCount);
+		page.putInt(blockBytes);
+		page.putInt(dataFiles.size());
+		for(DataFile dataFile : dataFiles)
+		{
+			byte[] bytes = dataFile.name.getBytes(StandardCharsets.UTF_8);
+			if(page.remaining() < 2 + bytes.length + 8 + 8 || bytes.length > Short.MAX_VALUE)
+				throw new IOException("data files do not fit in the footer");
+			page.putShort((short)bytes.length);
+			page.put(bytes);
+			page.putLong(dataFile.length);
+			page.putLong(dataFile.modificationTime);
+		}
+		page.flip();
+		out.writePage(out.pageCount(), page);
+
+		out.flush();
+	}
+
+//	  Appends a page holding count records or entries, the count's slot being at the front of the buffer.
+	private static int writePage(ByteBuffer page, int count, PageStore out) throws IOException
+	{
+		page.putInt(0, count);
+		page.flip();
+
+		int pageNumber = (int)out.pageCount();
+		out.writePage(pageNumber, page);
+		return pageNumber;
+	}
+
+//	  Checks the header of an index file and reads its footer.
+//	  @throws IOException thrown if the store does not hold an index file of the current version, written with its
+//	  page size.
+	public static Footer readFooter(PageStore in) throws IOException
+	{
+		int pageSize = in.pageSize();
+		if(in.pageCount() < 3)
+			throw new IOException("not an index file");
+
+		ByteBuffer page = ByteBuffer.allocate(pageSize);
+		in.readPage(0, page);
+		if(page.getInt(0) != MAGIC)
+			throw new IOException("not an index file");
+		if(page.getInt(4) != VERSION)
+			throw new IOException("unsupported index file version " + page.getInt(4));
+		if(page.getInt(8) != pageSize || page.getInt(12) != IndexRecord.BYTES)
+			throw new IOException("index file written with page size " + page.getInt(8) + ", opened with " + pageSize);
+
+		page.clear();
+		in.readPage(in.pageCount() - 1, page);
+		page.flip();
+		if(page.getInt() != MAGIC || page.getInt() != VERSION)
+			throw new IOException("index file has no footer");
+
+		long recordCount = page.getLong();
+		int height = page.getInt();
+		int rootPage = page.getInt();
+		int leafPageCount = page.getInt();
+		int blockBytes = page.getInt();
+		if(blockBytes < 0)
+			throw new IOException("index file has a negative block size: " + blockBytes);
+		int fileCount = page.getInt();
+
+		ArrayList<DataFile> dataFiles = new ArrayList<DataFile>(fileCount);
+		for(int i = 0; i < fileCount; i++)
+		{
+			byte[] bytes = new byte[page.getShort()];
+			page.get(bytes);
+			String name = new String(bytes, StandardCharsets.UTF_8);
+
+			long length = page.getLong();
+			long modificationTime = page.getLong();
+			if(length < 0 || modificationTime < 0)
+				throw new IOException("index file does not record the length and modification time of " + name);
+			dataFiles.add(new DataFile(name, length, modificationTime));
+		}
+
+		return new Footer(recordCount, height, rootPage, leafPageCount, blockBytes, dataFiles);
+	}
+
+//	  Reads an index file into the specified tree, which should be empty. Only the leaf pages are read; the
+//	  tree is bulk-loaded from them and builds its own guide nodes.
+//	  @return The footer of the file.
+//	  @throws IOException thrown if the store does not hold an index file or cannot be read.
+	public static Footer read(PageStore in, IntBPlusTree<IndexRecord> tree) throws IOException
+	{
+		Footer footer = readFooter(in);
+		if(footer.recordCount > Integer.MAX_VALUE)
+			throw new IOException("index too large to load: " + footer.recordCount + " records");
+
+		int[] keys = new int[(int)footer.recordCount];
+		int[] fileIds = new int[keys.length];
+		long[] offsets = new long[keys.length];
+		int[] lengths = new int[keys.length];
+		int n = 0;
+
+		ByteBuffer page = ByteBuffer.allocate(in.pageSize());
+		for(int p = 1; p <= footer.leafPageCount; p++)
+		{
+			page.clear();
+			in.readPage(p, page);
+
+			int count = count(page);
+			if(n + count > keys.length)
+				throw new IOException("index file holds more records than its footer says");
+			for(int i = 0; i < count; i++)
+			{
+				int position = recordPosition(i);
+				keys[n] = IndexRecord.key(page, position);
+				fileIds[n] = IndexRecord.fileId(page, position);
+				offsets[n] = IndexRecord.offset(page, position);
+				lengths[n++] = IndexRecord.length(page, position);
+			}
+		}
+
+		if(n != keys.length)
+			throw new IOException("index file holds fewer records than its footer says");
+
+		try
+		{
+			tree.bulkLoad(keys, new IndexRecordSlots(fileIds, offsets, lengths));
+		}
+		catch(IllegalArgumentException e)
+		{
+			throw new IOException("index file holds a negative file id, offset or length");
+		}
+		return footer;
+	}
+}
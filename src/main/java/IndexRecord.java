@@ -0,0 +1,111 @@
+import java.nio.ByteBuffer;
+
+//  Where the rows of one key are in the clustered data files: the id of the file, the byte offset of the
+//  first row and the number of bytes the rows take, newlines between them included.
+//  The index tree keeps its records' fields in primitive arrays (IndexRecordSlots) and only creates this object
+//  for the result of a lookup; written out a record is BYTES bytes wide, and can be read back field by field in
+//  place, without creating one.
+
+public final class IndexRecord
+{
+//	  Width of a written record: key, file id, offset and length.
+	public static final int BYTES = 4 + 4 + 8 + 4;
+
+	private static final int FILE_ID_POSITION = 4;
+	private static final int OFFSET_POSITION = 8;
+	private static final int LENGTH_POSITION = 16;
+
+	private final int mFileId;
+	private final long mOffset;
+	private final int mLength;
+
+//	  Creates an IndexRecord.
+//	  @throws IllegalArgumentException thrown if fileId, offset or length is negative.
+	public IndexRecord(int fileId, long offset, int length) throws IllegalArgumentException
+	{
+		if(fileId < 0 || offset < 0 || length < 0)
+			throw new IllegalArgumentException();
+
+		mFileId = fileId;
+		mOffset = offset;
+		mLength = length;
+	}
+
+	public int fileId()
+	{
+		return mFileId;
+	}
+
+//	  Returns the byte offset of the rows in the data file.
+	public long offset()
+	{
+		return mOffset;
+	}
+
+//	  Returns the number of bytes the rows take in the data file.
+	public int length()
+	{
+		return mLength;
+	}
+
+//	  Writes the record under the specified key at the buffer's position, and advances the position.
+	public void write(int key, ByteBuffer out)
+	{
+		write(key, mFileId, mOffset, mLength, out);
+	}
+
+//	  Writes a record made of the specified fields at the buffer's position, and advances the position.
+	public static void write(int key, int fileId, long offset, int length, ByteBuffer out)
+	{
+		out.putInt(key);
+		out.putInt(fileId);
+		out.putLong(offset);
+		out.putInt(length);
+	}
+
+//	  Reads a written record back; position is that of its first byte. The buffer's position is not changed.
+	public static IndexRecord read(ByteBuffer in, int position)
+	{
+		return new IndexRecord(fileId(in, position), offset(in, position), length(in, position));
+	}
+
+//	  Returns the key of the written record at the specified position.
+	public static int key(ByteBuffer in, int position)
+	{
+		return in.getInt(position);
+	}
+
+	public static int fileId(ByteBuffer in, int position)
+	{
+		return in.getInt(position + FILE_ID_POSITION);
+	}
+
+	public static long offset(ByteBuffer in, int position)
+	{
+		return in.getLong(position + OFFSET_POSITION);
+	}
+
+	public static int length(ByteBuffer in, int position)
+	{
+		return in.getInt(position + LENGTH_POSITION);
+	}
+
+	public boolean equals(Object o)
+	{
+		if(!(o instanceof IndexRecord))
+			return false;
+
+		IndexRecord other = (IndexRecord)o;
+		return mFileId == other.mFileId && mOffset == other.mOffset && mLength == other.mLength;
+	}
+
+	public int hashCode()
+	{
+		return (mFileId * 31 + Long.hashCode(mOffset)) * 31 + mLength;
+	}
+
+	public String toString()
+	{
+		return mFileId + "," + mOffset + "," + mLength;
+	}
+}
@@ -0,0 +1,118 @@
+import java.util.*;
+
+//  Leaf slots of an IntBPlusTree of IndexRecords, one record per key: the file ids, offsets and lengths are kept
+//  in parallel primitive arrays next to the keys, so an index entry costs its fields and no object of its own.
+//  Putting a second record under a key replaces the first.
+//  A Holder, or the static accessors, read a record's fields out of a leaf without creating an IndexRecord.
+
+public class IndexRecordSlots extends IntBPlusTree.LeafSlots<IndexRecord>
+{
+	private final int[] mFileIds;
+	private final long[] mOffsets;
+	private final int[] mLengths;
+
+//	  Creates empty slots, to pass to IntBPlusTree.withPageSize() as the kind of slots of a tree's leaves.
+	public IndexRecordSlots()
+	{
+		this(new int[0], new long[0], new int[0]);
+	}
+
+//	  Creates slots holding the records made of the fields at the same position in the specified arrays, for
+//	  IntBPlusTree.bulkLoad(). The arrays are used as they are, not copied.
+//	  @throws IllegalArgumentException thrown if the arrays differ in length or a field is negative.
+	public IndexRecordSlots(int[] fileIds, long[] offsets, int[] lengths) throws IllegalArgumentException
+	{
+		if(offsets.length != fileIds.length || lengths.length != fileIds.length)
+			throw new IllegalArgumentException();
+		for(int i = 0; i < fileIds.length; i++)
+		{
+			if(fileIds[i] < 0 || offsets[i] < 0 || lengths[i] < 0)
+				throw new IllegalArgumentException();
+		}
+
+		mFileIds = fileIds;
+		mOffsets = offsets;
+		mLengths = lengths;
+	}
+
+	protected IntBPlusTree.LeafSlots<IndexRecord> create(int capacity)
+	{
+		return new IndexRecordSlots(new int[capacity], new long[capacity], new int[capacity]);
+	}
+
+	protected int slotBytes()
+	{
+		return IndexRecord.BYTES - 4;
+	}
+
+	protected void set(int index, IndexRecord value)
+	{
+		mFileIds[index] = value.fileId();
+		mOffsets[index] = value.offset();
+		mLengths[index] = value.length();
+	}
+
+	protected void add(int index, IndexRecord value)
+	{
+		set(index, value);
+	}
+
+	protected List<IndexRecord> values(int index)
+	{
+		return Collections.singletonList(new IndexRecord(mFileIds[index], mOffsets[index], mLengths[index]));
+	}
+
+	protected void copy(int from, IntBPlusTree.LeafSlots<IndexRecord> slots, int to, int count)
+	{
+		IndexRecordSlots other = (IndexRecordSlots)slots;
+		System.arraycopy(mFileIds, from, other.mFileIds, to, count);
+		System.arraycopy(mOffsets, from, other.mOffsets, to, count);
+		System.arraycopy(mLengths, from, other.mLengths, to, count);
+	}
+
+//	  Returns the file id of the record in the specified slot of a leaf of IndexRecordSlots.
+	public static int fileId(IntBPlusTree.LeafSlots<IndexRecord> slots, int index)
+	{
+		return ((IndexRecordSlots)slots).mFileIds[index];
+	}
+
+	public static long offset(IntBPlusTree.LeafSlots<IndexRecord> slots, int index)
+	{
+		return ((IndexRecordSlots)slots).mOffsets[index];
+	}
+
+	public static int length(IntBPlusTree.LeafSlots<IndexRecord> slots, int index)
+	{
+		return ((IndexRecordSlots)slots).mLengths[index];
+	}
+
+//	  Holds the fields of the last record read into it, so one Holder can serve any number of lookups.
+	public static class Holder implements IntBPlusTree.SlotReader<IndexRecord>
+	{
+		private int mFileId;
+		private long mOffset;
+		private int mLength;
+
+		public void read(int position, IntBPlusTree.LeafSlots<IndexRecord> slots, int index)
+		{
+			mFileId = IndexRecordSlots.fileId(slots, index);
+			mOffset = IndexRecordSlots.offset(slots, index);
+			mLength = IndexRecordSlots.length(slots, index);
+		}
+
+		public int fileId()
+		{
+			return mFileId;
+		}
+
+		public long offset()
+		{
+			return mOffset;
+		}
+
+		public int length()
+		{
+			return mLength;
+		}
+	}
+}
@@ -0,0 +1,921 @@
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+
+//  Implements a B+ tree keyed by primitive ints.
+//  Keys are kept in int[] arrays and compared directly, so no Integer is boxed on the put/get path.
+//  A leaf keeps its values in LeafSlots next to its keys. By default each key maps to the list of values
+//  inserted under it, like BPlusTree; other kinds of slots, such as IndexRecordSlots, store the values of a
+//  key in primitive arrays instead, and are read through a SlotReader without creating objects.
+//
+//  Lookups may run while another thread is adding keys. Readers take no locks: every node carries a
+//  version stamp, and a reader validates the stamps of the nodes it passed through, restarting from the
+//  root only if a writer changed one of them underneath it. Writers are serialized among themselves and
+//  write-lock only the nodes they change. A value list is replaced, never modified, once readers can see it.
+//  Cursors are not safe to use while the tree is being modified.
+//
+//  A node is a struct of parallel arrays: the keys in an int[] next to the children in an array of references,
+//  or next to the leaf slots, so a search touches one contiguous key array per level. withPageSize() sizes the
+//  arrays so that each node fits a byte budget such as a 4 KB page.
+
+public class IntBPlusTree<V>
+{
+	private static final int DEFAULT_ORDER = 64;
+
+	// Approximate heap cost of a node apart from its entries: object and array headers, fields and lock.
+	private static final int NODE_OVERHEAD_BYTES = 96;
+	// Each guide entry is an int key plus a (compressed) reference.
+	private static final int ENTRY_BYTES = 4 + 4;
+
+	private int mOrder;
+	private int mLeafOrder;
+	// Every leaf's slots are created by this one.
+	private final LeafSlots<V> mSlotKind;
+
+	private volatile Node mRootNode;
+	private int mSize = 0;
+
+	private LeafNode mFirstLeaf;
+	private LeafNode mLastLeaf;
+
+	private int mModCount = Integer.MIN_VALUE;
+
+	private final ReentrantLock mWriteLock = new ReentrantLock();
+
+//	  Creates a new IntBPlusTree with the default order and leaf order.
+	IntBPlusTree()
+	{
+		this(DEFAULT_ORDER, DEFAULT_ORDER);
+	}
+
+//	  Creates a new IntBPlusTree.
+//	  @param order Order of internal guide nodes.
+//	  @param leafOrder Order of leaf nodes.
+//	  @throws IllegalArgumentException thrown if order < 3 or leafOrder < 1.
+	IntBPlusTree(int order, int leafOrder) throws IllegalArgumentException
+	{
+		this(order, leafOrder, new ListSlots<V>(0));
+	}
+
+//	  Creates a new IntBPlusTree whose leaves keep their values in slots of the same kind as slotKind.
+//	  @throws IllegalArgumentException thrown if order < 3 or leafOrder < 1.
+	IntBPlusTree(int order, int leafOrder, LeafSlots<V> slotKind) throws IllegalArgumentException
+	{
+		if(order < 3 || leafOrder < 1)
+			throw new IllegalArgumentException();
+
+		this.mOrder = order;
+		this.mLeafOrder = leafOrder;
+		this.mSlotKind = slotKind;
+
+		mRootNode = mFirstLeaf = mLastLeaf = new LeafNode();
+	}
+
+//	  Creates a new IntBPlusTree whose guide and leaf nodes each take about the specified number of bytes.
+//	  @throws IllegalArgumentException thrown if the page is too small to hold a node of order 3.
+	public static <V> IntBPlusTree<V> withPageSize(int pageBytes) throws IllegalArgumentException
+	{
+		return withPageSize(pageBytes, new ListSlots<V>(0));
+	}
+
+//	  Creates a new IntBPlusTree whose leaves keep their values in slots of the same kind as slotKind, and whose
+//	  guide and leaf nodes each take about the specified number of bytes.
+//	  @throws IllegalArgumentException thrown if the page is too small to hold a node of order 3.
+	public static <V> IntBPlusTree<V> withPageSize(int pageBytes, LeafSlots<V> slotKind) throws IllegalArgumentException
+	{
+		return new IntBPlusTree<V>(orderForPageSize(pageBytes), leafOrderForPageSize(pageBytes, slotKind), slotKind);
+	}
+
+//	  Returns the largest order whose guide node fits in the specified number of bytes.
+	public static int orderForPageSize(int pageBytes)
+	{
+		// Node arrays have one spare slot for the entry that overflows just before a split.
+		return (pageBytes - NODE_OVERHEAD_BYTES) / ENTRY_BYTES - 1;
+	}
+
+//	  Returns the largest order whose leaf, with slots of the same kind as slotKind, fits in the specified number
+//	  of bytes.
+	public static int leafOrderForPageSize(int pageBytes, LeafSlots<?> slotKind)
+	{
+		return Math.max(1, (pageBytes - NODE_OVERHEAD_BYTES) / (4 + slotKind.slotBytes()) - 1);
+	}
+
+//	  Returns the first key currently in this tree.
+	public int firstKey()
+	{
+		if(mSize == 0)
+			throw new NoSuchElementException();
+
+		return mFirstLeaf.keys[0];
+	}
+
+//	  Returns the last key currently in this tree.
+	public int lastKey()
+	{
+		if(mSize == 0)
+			throw new NoSuchElementException();
+
+		return mLastLeaf.keys[mLastLeaf.count - 1];
+	}
+
+//	  Returns the number of distinct keys in this tree.
+	public int size()
+	{
+		return mSize;
+	}
+
+	public boolean isEmpty()
+	{
+		return mSize == 0;
+	}
+
+//	  Removes all mappings from this tree.
+	public void clear()
+	{
+		mWriteLock.lock();
+		try
+		{
+			LeafNode newRoot = new LeafNode();
+			mFirstLeaf = mLastLeaf = newRoot;
+			mRootNode = newRoot;
+			mSize = 0;
+			mModCount++;
+		}
+		finally
+		{
+			mWriteLock.unlock();
+		}
+	}
+
+//	  Returns true if this tree contains a mapping for the specified key.
+	public boolean containsKey(int key)
+	{
+		return get(key) != null;
+	}
+
+//	  Returns the values mapped to the specified key, or null if the key is not present.
+//	  Descends without locking and retries from the root if a node changed while it was being read.
+	public List<V> get(int key)
+	{
+		LeafRead read = new LeafRead();
+		read(key, false, read, 0, null);
+		return read.values;
+	}
+
+//	  Hands the values mapped to the specified key to reader, as position 0, without creating objects.
+//	  @return false if the key is not present.
+	public boolean get(int key, SlotReader<V> reader)
+	{
+		return read(key, false, null, 0, reader);
+	}
+
+//	  Returns the values mapped to the greatest key less than or equal to the specified key, or null if there
+//	  is no such key.
+	public List<V> floor(int key)
+	{
+		LeafRead read = new LeafRead();
+		read(key, true, read, 0, null);
+		return read.values;
+	}
+
+//	  Hands the values mapped to the greatest key less than or equal to the specified key to reader, as
+//	  position 0, without creating objects.
+//	  @return false if there is no such key.
+	public boolean floor(int key, SlotReader<V> reader)
+	{
+		return read(key, true, null, 0, reader);
+	}
+
+//	  Returns the values mapped to each of the specified keys, or null for the keys which are not present.
+//	  The keys are looked up in ascending order, so keys falling in the same leaf share one descent and a key
+//	  in the next leaf is reached along the leaf chain instead of from the root.
+//	  @return An array whose i-th element belongs to keys[i].
+	public List<V>[] getAll(int[] keys)
+	{
+		List<V>[] result = new List[keys.length];
+		getAll(keys, result, null);
+		return result;
+	}
+
+//	  Like getAll(keys), but hands the values of each key that is present to reader instead, with the key's
+//	  position in keys.
+	public void getAll(int[] keys, SlotReader<V> reader)
+	{
+		getAll(keys, null, reader);
+	}
+
+//	  Looks the keys up in ascending order, collecting their values in result or handing them to reader.
+	private void getAll(int[] keys, List<V>[] result, SlotReader<V> reader)
+	{
+		// Sort the positions by key; with the key in the upper half, one sort of longs does it.
+		long[] order = new long[keys.length];
+		for(int i = 0; i < keys.length; i++)
+			order[i] = ((long)keys[i] << 32) | i;
+		Arrays.sort(order);
+
+		LeafRead read = new LeafRead();
+		for(long packed : order)
+		{
+			int key = (int)(packed >> 32);
+			int position = (int)packed;
+
+			if(read.leaf == null || !readNearby(key, read, position, reader))
+				read(key, false, read, position, reader);
+
+			if(result != null)
+				result[position] = read.values;
+		}
+	}
+
+//	  The leaf a lookup ended in, the version stamp it was read under and the values found there.
+	private class LeafRead
+	{
+		public LeafNode leaf = null;
+		public long stamp;
+		public List<V> values;
+	}
+
+//	  Looks up the specified key from the root, leaving the leaf it ended in in read, if read is not null.
+//	  The values found are handed to reader, if it is not null, else left in read. A reader may be handed
+//	  the values more than once, if the leaf changed while they were being read; the last call holds.
+//	  @param floor Whether to settle for the greatest key below the specified one if it is absent.
+//	  @param position Position to hand to reader.
+//	  @return Whether a key was found.
+	private boolean read(int key, boolean floor, LeafRead read, int position, SlotReader<V> reader)
+	{
+		retry:
+		while(true)
+		{
+			Node cur = mRootNode;
+			long stamp = cur.lock.tryOptimisticRead();
+
+			// A root that is being split, or has just been replaced, may be missing keys.
+			if(stamp == 0 || cur != mRootNode)
+				continue;
+
+			while(cur instanceof IntBPlusTree.GuideNode)
+			{
+				GuideNode gn = (GuideNode)cur;
+				Node child = gn.children[findGuideIndex(gn, key)];
+				long childStamp = child == null ? 0 : child.lock.tryOptimisticRead();
+
+				// Only trust the child if its parent did not change while we picked it.
+				if(childStamp == 0 || !gn.lock.validate(stamp))
+					continue retry;
+
+				cur = child;
+				stamp = childStamp;
+			}
+
+			LeafNode ln = (LeafNode)cur;
+			int index = searchKeys(ln.keys, 0, Math.min(ln.count, ln.keys.length), key);
+			// A leaf starts at its separator, so a key below its first key is only found in the leftmost leaf,
+			// which has no smaller keys before it.
+			if(index < 0 && floor)
+				index = -index - 2;
+			List<V> valueList = readSlot(ln, index, position, reader);
+
+			if(!ln.lock.validate(stamp))
+				continue;
+
+			if(read != null)
+			{
+				read.leaf = ln;
+				read.stamp = stamp;
+				read.values = valueList;
+			}
+			return index >= 0;
+		}
+	}
+
+//	  Hands slot index of a leaf to reader, or returns its values if there is no reader. Returns null, without
+//	  calling reader, if index is negative.
+	private List<V> readSlot(LeafNode ln, int index, int position, SlotReader<V> reader)
+	{
+		if(index < 0)
+			return null;
+
+		if(reader == null)
+			return ln.slots.values(index);
+
+		reader.read(position, ln.slots, index);
+		return null;
+	}
+
+//	  Looks up a key no smaller than the previous one in the leaf of the previous lookup or the one after it.
+//	  @return false if the key lies elsewhere, or a node changed, and a descent from the root is needed.
+	private boolean readNearby(int key, LeafRead read, int position, SlotReader<V> reader)
+	{
+		LeafNode ln = read.leaf;
+		int count = Math.min(ln.count, ln.keys.length);
+
+		// The previous key led here, so the leaf covers every key up to its last one.
+		if(count > 0 && key <= ln.keys[count - 1])
+		{
+			int index = searchKeys(ln.keys, 0, count, key);
+			List<V> valueList = readSlot(ln, index, position, reader);
+			if(!ln.lock.validate(read.stamp))
+				return false;
+
+			read.values = valueList;
+			return true;
+		}
+
+		LeafNode next = ln.next;
+		if(next == null || !ln.lock.validate(read.stamp))
+			return false;
+
+		long stamp = next.lock.tryOptimisticRead();
+		int nextCount = Math.min(next.count, next.keys.length);
+		if(stamp == 0 || nextCount == 0 || key < next.keys[0] || key > next.keys[nextCount - 1])
+			return false;
+
+		int index = searchKeys(next.keys, 0, nextCount, key);
+		List<V> valueList = readSlot(next, index, position, reader);
+		if(!next.lock.validate(stamp))
+			return false;
+
+		read.leaf = next;
+		read.stamp = stamp;
+		read.values = valueList;
+		return true;
+	}
+
+//	  Appends the specified value to the values mapped to the specified key.
+//	  @return true if the key was not present before this call.
+	public boolean put(int key, V value)
+	{
+		mWriteLock.lock();
+		try
+		{
+			int oldSize = mSize;
+
+			// Insert the new key/value into the tree.
+			Node oldRoot = mRootNode;
+			Node newNode = oldRoot.put(key, value);
+
+			// Create new root? The old root stays write-locked until the new one is published.
+			if(newNode != null)
+			{
+				GuideNode newRoot = new GuideNode();
+				newRoot.children[0] = oldRoot;
+				newRoot.keys[1] = newNode.lowKey();
+				newRoot.children[1] = newNode;
+				newRoot.count = 2;
+
+				mRootNode = newRoot;
+				oldRoot.unlockWrite();
+			}
+
+			mModCount++;
+
+			return mSize != oldSize;
+		}
+		finally
+		{
+			mWriteLock.unlock();
+		}
+	}
+
+//	  Maps each of the specified keys to the value at the same position in values.
+//	  An empty tree is built bottom-up from full nodes when the keys are in strictly ascending order; otherwise the
+//	  keys are put() one by one. Readers see either the empty tree or the loaded one.
+//	  @throws IllegalArgumentException thrown if keys and values differ in length.
+	public void bulkLoad(int[] keys, List<? extends V> values) throws IllegalArgumentException
+	{
+		if(keys.length != values.size())
+			throw new IllegalArgumentException();
+
+		LeafSlots<V> slots = mSlotKind.create(keys.length);
+		for(int i = 0; i < keys.length; i++)
+			slots.set(i, values.get(i));
+
+		bulkLoad(keys, slots);
+	}
+
+//	  Like bulkLoad(keys, values), but takes the values already in slots of the tree's kind, slot i holding the
+//	  values of keys[i], so they can be loaded without creating an object for each.
+//	  @throws IllegalArgumentException thrown if slots is not of the tree's kind.
+	public void bulkLoad(int[] keys, LeafSlots<V> slots) throws IllegalArgumentException
+	{
+		if(slots.getClass() != mSlotKind.getClass())
+			throw new IllegalArgumentException();
+
+		mWriteLock.lock();
+		try
+		{
+			boolean ascending = mSize == 0;
+			for(int i = 1; ascending && i < keys.length; i++)
+				ascending = keys[i - 1] < keys[i];
+
+			if(!ascending)
+			{
+				for(int i = 0; i < keys.length; i++)
+				{
+					for(V value : slots.values(i))
+						put(keys[i], value);
+				}
+				return;
+			}
+
+			if(keys.length == 0)
+				return;
+
+			// Spread the keys evenly so the last leaf is not left nearly empty.
+			int leafCount = (keys.length + mLeafOrder - 1) / mLeafOrder;
+			Node[] level = new IntBPlusTree.Node[leafCount];
+			LeafNode prevLeaf = null;
+			int from = 0;
+			for(int l = 0; l < leafCount; l++)
+			{
+				int to = (int)((long)keys.length * (l + 1) / leafCount);
+
+				LeafNode leaf = new LeafNode();
+				System.arraycopy(keys, from, leaf.keys, 0, to - from);
+				slots.copy(from, leaf.slots, 0, to - from);
+				leaf.count = to - from;
+
+				leaf.prev = prevLeaf;
+				if(prevLeaf != null)
+					prevLeaf.next = leaf;
+				prevLeaf = leaf;
+
+				level[l] = leaf;
+				from = to;
+			}
+
+			// Build the guide levels above the leaves, the same way.
+			while(level.length > 1)
+			{
+				int groups = (level.length + mOrder - 1) / mOrder;
+				Node[] upper = new IntBPlusTree.Node[groups];
+				GuideNode prevGuide = null;
+				from = 0;
+				for(int g = 0; g < groups; g++)
+				{
+					int to = (int)((long)level.length * (g + 1) / groups);
+
+					GuideNode guide = new GuideNode();
+					for(int i = from; i < to; i++)
+					{
+						guide.keys[i - from] = level[i].lowKey();
+						guide.children[i - from] = level[i];
+					}
+					guide.count = to - from;
+
+					guide.prev = prevGuide;
+					if(prevGuide != null)
+						prevGuide.next = guide;
+					prevGuide = guide;
+
+					upper[g] = guide;
+					from = to;
+				}
+
+				level = upper;
+			}
+
+			mFirstLeaf = (LeafNode)firstLeaf(level[0]);
+			mLastLeaf = prevLeaf;
+			mSize = keys.length;
+			mModCount++;
+
+			// Publish the loaded tree last.
+			mRootNode = level[0];
+		}
+		finally
+		{
+			mWriteLock.unlock();
+		}
+	}
+
+//	  Returns the leftmost leaf under the specified node.
+	private Node firstLeaf(Node node)
+	{
+		while(node instanceof IntBPlusTree.GuideNode)
+			node = ((GuideNode)node).children[0];
+
+		return node;
+	}
+
+//	  Returns a cursor over the keys between low (inclusive) and high (exclusive).
+	public Cursor cursor(int low, int high)
+	{
+		return new Cursor(low, high);
+	}
+
+//	  Returns a cursor over every key in this tree.
+	public Cursor cursor()
+	{
+		return new Cursor(Integer.MIN_VALUE, Integer.MAX_VALUE, false);
+	}
+
+//	  Returns the leaf node that would contain the specified key.
+	private LeafNode findLeaf(int key)
+	{
+		Node cur = mRootNode;
+		while(cur instanceof IntBPlusTree.GuideNode)
+		{
+			GuideNode gn = (GuideNode)cur;
+			cur = gn.children[findGuideIndex(gn, key)];
+		}
+
+		return (LeafNode)cur;
+	}
+
+//	  Returns the index to follow in a guide node for the specified key.
+	private int findGuideIndex(GuideNode node, int key)
+	{
+		// keys[0] is only the lower bound, so search the separators from index 1.
+		int low = 1;
+		int high = node.count - 1;
+		int[] keys = node.keys;
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			if(key < keys[mid])
+				high = mid - 1;
+			else
+				low = mid + 1;
+		}
+
+		return low - 1;
+	}
+
+//	  Returns the index of key in keys[from, to), or (-(insertion point) - 1) if it is absent.
+	private static int searchKeys(int[] keys, int from, int to, int key)
+	{
+		int low = from;
+		int high = to - 1;
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int midKey = keys[mid];
+			if(key < midKey)
+				high = mid - 1;
+			else if(key > midKey)
+				low = mid + 1;
+			else
+				return mid;
+		}
+
+		return -(low + 1);
+	}
+
+//	  Base class for tree nodes.
+	private abstract class Node
+	{
+		public int[] keys;
+		public int count;
+
+		// Version stamp validated by lock-free readers; writers hold it while they change this Node.
+		public final StampedLock lock = new StampedLock();
+		private long writeStamp;
+
+//		  Maps the specified key to the specified value in this Node.
+//		  @return A new right node if this node was split, else null. A Node that splits stays write-locked,
+//		    so readers cannot see it without its new sibling; the caller unlocks it once the sibling is linked in.
+		public abstract Node put(int key, V value);
+
+		public void lockWrite()
+		{
+			writeStamp = lock.writeLock();
+		}
+
+		public void unlockWrite()
+		{
+			lock.unlockWrite(writeStamp);
+		}
+
+//		  Returns the smallest key that may be stored under this Node.
+		public int lowKey()
+		{
+			return keys[0];
+		}
+	}
+
+//	  Represents a guide node in the tree.
+	private class GuideNode extends Node
+	{
+		public Node[] children;
+
+		public GuideNode prev = null;
+		public GuideNode next = null;
+
+//		  Creates a new GuideNode of the specified order.
+		public GuideNode()
+		{
+			keys = new int[mOrder + 1];
+			children = new IntBPlusTree.Node[mOrder + 1];
+		}
+
+//		  Maps the specified key to the specified value in this Node.
+//		  @return A new right node if this node was split, else null.
+		public Node put(int key, V value)
+		{
+			GuideNode newGuide = null;
+
+			int guideIndex = findGuideIndex(this, key);
+
+			// Recurse to child.
+			Node child = children[guideIndex];
+			Node newNode = child.put(key, value);
+
+			// Did we split?
+			if(newNode != null)
+			{
+				lockWrite();
+
+				// Insert the new key and node after the followed child.
+				int insertIndex = guideIndex + 1;
+				System.arraycopy(keys, insertIndex, keys, insertIndex + 1, count - insertIndex);
+				System.arraycopy(children, insertIndex, children, insertIndex + 1, count - insertIndex);
+				keys[insertIndex] = newNode.lowKey();
+				children[insertIndex] = newNode;
+				count++;
+
+				// Do we need to split?
+				if(count > mOrder)
+				{
+					newGuide = new GuideNode();
+
+					int half = count / 2;
+					newGuide.count = count - half;
+					System.arraycopy(keys, half, newGuide.keys, 0, newGuide.count);
+					System.arraycopy(children, half, newGuide.children, 0, newGuide.count);
+					Arrays.fill(children, half, count, null);
+					count = half;
+
+					newGuide.next = next;
+					newGuide.prev = this;
+					if(next != null)
+						next.prev = newGuide;
+					next = newGuide;
+				}
+
+				// The split child is reachable through its new sibling now.
+				child.unlockWrite();
+				if(newGuide == null)
+					unlockWrite();
+			}
+
+			return newGuide;
+		}
+	}
+
+//	  Represents a leaf node in the tree.
+	private class LeafNode extends Node
+	{
+		public LeafSlots<V> slots;
+
+		private LeafNode prev = null;
+		private LeafNode next = null;
+
+//		  Creates a new LeafNode of the specified order.
+		public LeafNode()
+		{
+			keys = new int[mLeafOrder + 1];
+			slots = mSlotKind.create(mLeafOrder + 1);
+		}
+
+//		  Maps the specified key to the specified value in this Node.
+//		  @return A new right node if this node was split, else null.
+		public Node put(int key, V value)
+		{
+			LeafNode newLeaf = null;
+
+			int insertIndex = searchKeys(keys, 0, count, key);
+			if(insertIndex >= 0)
+			{
+				lockWrite();
+				slots.add(insertIndex, value);
+				unlockWrite();
+				return null;
+			}
+
+			lockWrite();
+
+			// Insert the new key and value at the found index.
+			insertIndex = -(insertIndex + 1);
+			System.arraycopy(keys, insertIndex, keys, insertIndex + 1, count - insertIndex);
+			slots.copy(insertIndex, slots, insertIndex + 1, count - insertIndex);
+
+			keys[insertIndex] = key;
+			slots.set(insertIndex, value);
+			count++;
+			mSize++;
+
+			// Do we need to split?
+			if(count > mLeafOrder)
+			{
+				newLeaf = new LeafNode();
+
+				// Keys added in ascending order, as createIndex adds them, would leave every leaf but the last
+				// half empty, so a key appended to the last leaf leaves it full instead.
+				int half = insertIndex == count - 1 && next == null ? count - 1 : count / 2;
+				newLeaf.count = count - half;
+				System.arraycopy(keys, half, newLeaf.keys, 0, newLeaf.count);
+				slots.copy(half, newLeaf.slots, 0, newLeaf.count);
+				slots.clear(half, count);
+				count = half;
+
+				newLeaf.next = next;
+				newLeaf.prev = this;
+				if(next != null)
+					next.prev = newLeaf;
+				else
+					mLastLeaf = newLeaf;
+				next = newLeaf;
+			}
+			else
+			{
+				unlockWrite();
+			}
+
+			return newLeaf;
+		}
+	}
+
+//	  The values of the keys of a leaf, slot i holding those of the leaf's i-th key. Each leaf has its own
+//	  slots, of the kind the tree was created with, so a kind of value can be kept in whatever arrays suit it.
+//	  Writers change slots only while they hold the leaf's write lock. Readers read them without locking and
+//	  throw away what they read if the leaf changed meanwhile, so reading a slot a writer is moving must not
+//	  fail, and a slot that readers may hold on to is replaced rather than modified.
+	public abstract static class LeafSlots<V>
+	{
+//		  Returns new slots of the same kind, with room for the specified number of keys.
+		protected abstract LeafSlots<V> create(int capacity);
+
+//		  Returns the approximate heap cost of one slot, in bytes, apart from the key.
+		protected abstract int slotBytes();
+
+//		  Makes value the only value of the specified slot.
+		protected abstract void set(int index, V value);
+
+//		  Adds value to the values of the specified slot.
+		protected abstract void add(int index, V value);
+
+//		  Returns the values of the specified slot.
+		protected abstract List<V> values(int index);
+
+//		  Copies count slots, starting at from, to the specified slots of the same kind, starting at to. The
+//		  ranges may overlap if the slots are these.
+		protected abstract void copy(int from, LeafSlots<V> slots, int to, int count);
+
+//		  Empties slots from (inclusive) to to (exclusive), so they hold on to no objects.
+		protected void clear(int from, int to)
+		{
+		}
+	}
+
+//	  Reads the values of a key straight from a leaf's slots, for lookups that create no objects.
+	public interface SlotReader<V>
+	{
+//		  Reads the values in the specified slot. A lookup may call this more than once for one key, if the
+//		  leaf changed while the slot was being read; the last call holds.
+//		  @param position Position of the key among those looked up, or 0 for a lookup of a single key.
+		void read(int position, LeafSlots<V> slots, int index);
+	}
+
+//	  The default slots: the list of values of each key. Readers may hold a list, so adding a value to a key
+//	  replaces its list with a longer copy.
+	private static class ListSlots<V> extends LeafSlots<V>
+	{
+		private final List<V>[] mValues;
+
+		public ListSlots(int capacity)
+		{
+			mValues = new List[capacity];
+		}
+
+		protected LeafSlots<V> create(int capacity)
+		{
+			return new ListSlots<V>(capacity);
+		}
+
+		protected int slotBytes()
+		{
+			// A (compressed) reference to the list.
+			return 4;
+		}
+
+		protected void set(int index, V value)
+		{
+			ArrayList<V> valueList = new ArrayList<V>(1);
+			valueList.add(value);
+			mValues[index] = valueList;
+		}
+
+		protected void add(int index, V value)
+		{
+			List<V> oldList = mValues[index];
+			ArrayList<V> valueList = new ArrayList<V>(oldList.size() + 1);
+			valueList.addAll(oldList);
+			valueList.add(value);
+			mValues[index] = valueList;
+		}
+
+		protected List<V> values(int index)
+		{
+			return mValues[index];
+		}
+
+		protected void copy(int from, LeafSlots<V> slots, int to, int count)
+		{
+			System.arraycopy(mValues, from, ((ListSlots<V>)slots).mValues, to, count);
+		}
+
+		protected void clear(int from, int to)
+		{
+			Arrays.fill(mValues, from, to, null);
+		}
+	}
+
+//	  Walks the keys of a range in ascending order along the leaf chain.
+	public class Cursor
+	{
+		private int modCount;
+
+		private int high;
+		private boolean bounded;
+
+		private LeafNode curNode;
+		private int curIndex = 0;
+
+		private LeafNode keyNode;
+		private int keyIndex;
+
+//		  Creates a new Cursor over the keys between low (inclusive) and high (exclusive).
+		private Cursor(int low, int high)
+		{
+			this(low, high, true);
+		}
+
+		private Cursor(int low, int high, boolean bounded)
+		{
+			this.modCount = mModCount;
+			this.high = high;
+			this.bounded = bounded;
+
+			curNode = findLeaf(low);
+			curIndex = searchKeys(curNode.keys, 0, curNode.count, low);
+			if(curIndex < 0)
+				curIndex = -(curIndex + 1);
+
+			// We may need to skip to the next node.
+			if(curIndex >= curNode.count)
+			{
+				curNode = curNode.next;
+				curIndex = 0;
+			}
+		}
+
+//		  Returns whether there are any keys left in the range.
+		public boolean hasNext()
+		{
+			return curNode != null && curIndex < curNode.count &&
+				(!bounded || curNode.keys[curIndex] < high);
+		}
+
+//		  Moves to the next key in the range.
+		public void next()
+		{
+			// Make sure tree has not been modified.
+			if(modCount != mModCount)
+				throw new ConcurrentModificationException();
+
+			if(!hasNext())
+				throw new NoSuchElementException();
+
+			keyNode = curNode;
+			keyIndex = curIndex;
+
+			curIndex++;
+			if(curIndex >= curNode.count)
+			{
+				curNode = curNode.next;
+				curIndex = 0;
+			}
+		}
+
+//		  Returns the key the cursor is positioned on.
+		public int key()
+		{
+			return keyNode.keys[keyIndex];
+		}
+
+//		  Returns the values mapped to the key the cursor is positioned on.
+		public List<V> values()
+		{
+			return keyNode.slots.values(keyIndex);
+		}
+
+//		  Hands the values mapped to the key the cursor is positioned on to reader, as position 0, without
+//		  creating objects.
+		public void read(SlotReader<V> reader)
+		{
+			reader.read(0, keyNode.slots, keyIndex);
+		}
+	}
+}
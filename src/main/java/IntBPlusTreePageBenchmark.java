@@ -0,0 +1,112 @@
+import java.util.Random;
+
+//  Measures the load and lookup cost of the index tree BPlusTree builds, an IntBPlusTree of IndexRecords kept in
+//  IndexRecordSlots, for a range of node page sizes on lineitem-like orderkeys, and reports the page size with
+//  the fastest lookups.
+//  TPC-H orderkeys are sparse (only the first 8 of every 32 are used) and each order has 1 to 7 lineitems,
+//  which arrive clustered by orderkey; each order gets one record covering its rows, as in a dense index.
+//  usage : IntBPlusTreePageBenchmark [order count] [page size ...]
+
+public class IntBPlusTreePageBenchmark
+{
+	private static final int DEFAULT_ORDER_COUNT = 2500000;
+	private static final int[] DEFAULT_PAGE_SIZES = { 256, 512, 1024, 2048, 4096, 8192, 16384, 32768 };
+	// Approximate bytes of a lineitem row in the data file, newline included.
+	private static final int ROW_BYTES = 128;
+
+	public static void main(String[] args)
+	{
+		int wOrderCount = DEFAULT_ORDER_COUNT;
+		int[] wPageSizes = DEFAULT_PAGE_SIZES;
+
+		if(args.length > 0)
+			wOrderCount = Integer.parseInt(args[0]);
+		if(args.length > 1)
+		{
+			wPageSizes = new int[args.length - 1];
+			for(int i = 1; i < args.length; i++)
+				wPageSizes[i - 1] = Integer.parseInt(args[i]);
+		}
+
+		Random wRandom = new Random(42);
+
+		// Orderkeys in file order, and how many lineitems each one has.
+		int[] wKeys = new int[wOrderCount];
+		int[] wLineCounts = new int[wOrderCount];
+		for(int i = 0; i < wOrderCount; i++)
+		{
+			wKeys[i] = (i / 8) * 32 + (i % 8) + 1;
+			wLineCounts[i] = 1 + wRandom.nextInt(7);
+		}
+
+		int[] wProbes = wKeys.clone();
+		shuffle(wProbes, wRandom);
+
+		// Warm up the JIT before measuring.
+		run(wKeys, wLineCounts, wProbes, 4096, false);
+
+		System.out.println("page(bytes)\torder\tleaf order\tload(ns/key)\tlookup(ns/op)");
+		int wBestPageSize = 0;
+		long wBestLookup = Long.MAX_VALUE;
+		for(int wPageSize : wPageSizes)
+		{
+			long wLookup = run(wKeys, wLineCounts, wProbes, wPageSize, true);
+			if(wLookup < wBestLookup)
+			{
+				wBestLookup = wLookup;
+				wBestPageSize = wPageSize;
+			}
+		}
+
+		System.out.println("best page size : " + wBestPageSize + " bytes (order " + IntBPlusTree.orderForPageSize(wBestPageSize)
+			+ ", leaf order " + IntBPlusTree.leafOrderForPageSize(wBestPageSize, new IndexRecordSlots()) + ")");
+	}
+
+//	  Indexes the keys in a tree with the specified page size and looks them up in random order, reading each
+//	  record into one holder, as searchData does.
+//	  @return The lookup cost in nanoseconds per probe.
+	private static long run(int[] pKeys, int[] pLineCounts, int[] pProbes, int pPageSize, boolean pPrint)
+	{
+		IntBPlusTree<IndexRecord> wTree = IntBPlusTree.withPageSize(pPageSize, new IndexRecordSlots());
+
+		long wOffset = 0;
+		long wStartTime = System.nanoTime();
+		for(int i = 0; i < pKeys.length; i++)
+		{
+			int wLength = pLineCounts[i] * ROW_BYTES - 1;
+			wTree.put(pKeys[i], new IndexRecord(0, wOffset, wLength));
+			wOffset += wLength + 1;
+		}
+		long wLoadTime = System.nanoTime() - wStartTime;
+
+		IndexRecordSlots.Holder wRecord = new IndexRecordSlots.Holder();
+		int wFound = 0;
+		wStartTime = System.nanoTime();
+		for(int i = 0; i < pProbes.length; i++)
+		{
+			if(wTree.get(pProbes[i], wRecord))
+				wFound++;
+		}
+		long wLookupTime = System.nanoTime() - wStartTime;
+
+		if(wFound != pProbes.length)
+			throw new IllegalStateException("lookup missed " + (pProbes.length - wFound) + " keys");
+
+		if(pPrint)
+			System.out.println(pPageSize + "\t\t" + IntBPlusTree.orderForPageSize(pPageSize) + "\t" + IntBPlusTree.leafOrderForPageSize(pPageSize, new IndexRecordSlots())
+				+ "\t\t" + (wLoadTime / pKeys.length) + "\t\t" + (wLookupTime / pProbes.length));
+
+		return wLookupTime / pProbes.length;
+	}
+
+	private static void shuffle(int[] pArray, Random pRandom)
+	{
+		for(int i = pArray.length - 1; i > 0; i--)
+		{
+			int j = pRandom.nextInt(i + 1);
+			int wTemp = pArray[i];
+			pArray[i] = pArray[j];
+			pArray[j] = wTemp;
+		}
+	}
+}
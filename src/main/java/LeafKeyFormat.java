@@ -0,0 +1,37 @@
+import java.util.*;
+
+//  How the leaves of a B+ tree store their keys.
+//  The compressed formats search keys in their natural order, so a tree can only use them without a Comparator.
+
+public enum LeafKeyFormat
+{
+	// Every key as its own object in an ArrayList.
+	PLAIN
+	{
+		public <K> List<K> newKeyList(int capacity)
+		{
+			return new ArrayList<K>(capacity);
+		}
+	},
+
+	// Integer keys as 16-bit deltas from a base key; see DeltaKeyList.
+	INT_DELTA
+	{
+		public <K> List<K> newKeyList(int capacity)
+		{
+			return (List<K>)(List<?>)new DeltaKeyList(capacity);
+		}
+	},
+
+	// String keys as suffixes of a prefix shared by the whole leaf; see PrefixKeyList.
+	STRING_PREFIX
+	{
+		public <K> List<K> newKeyList(int capacity)
+		{
+			return (List<K>)(List<?>)new PrefixKeyList(capacity);
+		}
+	};
+
+//	  Returns a new, empty list for the keys of a leaf of the specified order.
+	public abstract <K> List<K> newKeyList(int capacity);
+}
@@ -0,0 +1,218 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+//  A PageStore over a local file. A store opened for reading maps the file in read-only regions of about
+//  1 GB; pages are copied straight from the mapping to the caller's buffers, and the OS page cache is shared
+//  by every process that maps the same file.
+//  A store created for writing maps nothing: pages are written, and read back, through the file channel, so
+//  the file only ever grows by the pages written and no mapping is left over it when it is closed.
+
+public class MappedFilePageStore implements PageStore
+{
+	private static final int REGION_BYTES = 1 << 30;
+
+	private final RandomAccessFile mFile;
+	private final FileChannel mChannel;
+	private final boolean mWritable;
+	private final int mPageSize;
+	private final long mRegionBytes;
+
+	private final ArrayList<MappedByteBuffer> mRegions = new ArrayList<MappedByteBuffer>();
+	private long mLength;
+
+//	  Creates a new, empty file, replacing any existing one, and opens it for writing.
+//	  @throws IllegalArgumentException thrown if pageSize < 1 or pageSize > 1 GB.
+	public static MappedFilePageStore create(File file, int pageSize) throws IOException, IllegalArgumentException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(0);
+		return new MappedFilePageStore(raf, true, pageSize);
+	}
+
+//	  Opens an existing file for reading.
+//	  @throws IllegalArgumentException thrown if pageSize < 1 or pageSize > 1 GB.
+	public static MappedFilePageStore open(File file, int pageSize) throws IOException, IllegalArgumentException
+	{
+		return new MappedFilePageStore(new RandomAccessFile(file, "r"), false, pageSize);
+	}
+
+	private MappedFilePageStore(RandomAccessFile file, boolean writable, int pageSize) throws IOException, IllegalArgumentException
+	{
+		if(pageSize < 1 || pageSize > REGION_BYTES)
+		{
+			file.close();
+			throw new IllegalArgumentException();
+		}
+
+		mFile = file;
+		mChannel = file.getChannel();
+		mWritable = writable;
+		mPageSize = pageSize;
+		// Regions hold whole pages, so no page straddles two mappings.
+		mRegionBytes = (long)(REGION_BYTES / pageSize) * pageSize;
+		mLength = mChannel.size();
+	}
+
+	public int pageSize()
+	{
+		return mPageSize;
+	}
+
+	public long pageCount()
+	{
+		return (mLength + mPageSize - 1) / mPageSize;
+	}
+
+	public long length()
+	{
+		return mLength;
+	}
+
+//	  Returns the mapping of the specified region, mapping it on first use.
+//	  @throws IOException thrown if the store is writable, and so is not mapped.
+	private MappedByteBuffer region(int index) throws IOException
+	{
+		if(mWritable)
+			throw new IOException("not mapped: opened for writing");
+
+		while(mRegions.size() <= index)
+			mRegions.add(null);
+
+		MappedByteBuffer region = mRegions.get(index);
+		if(region == null)
+		{
+			long start = index * mRegionBytes;
+			region = mChannel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(mRegionBytes, mLength - start));
+			mRegions.set(index, region);
+		}
+
+		return region;
+	}
+
+//	  Returns whether the store is mapped, and so can be read in place through regionOf().
+	boolean isMapped()
+	{
+		return !mWritable;
+	}
+
+//	  Returns the mapping holding the specified byte position, for reading in place; the byte is at
+//	  regionPosition(position) in it. Pages never straddle two mappings. Only a store opened for reading is mapped.
+	MappedByteBuffer regionOf(long position) throws IOException
+	{
+		return region((int)(position / mRegionBytes));
+	}
+
+	int regionPosition(long position)
+	{
+		return (int)(position % mRegionBytes);
+	}
+
+	public void readPage(long page, ByteBuffer dst) throws IOException
+	{
+		if(page < 0 || page >= pageCount())
+			throw new IOException("no page " + page);
+
+		long position = page * mPageSize;
+		int n = (int)Math.min(mPageSize, mLength - position);
+
+		if(mWritable)
+		{
+			ByteBuffer to = dst.duplicate();
+			to.limit(to.position() + n);
+			readFully(position, to);
+			dst.position(to.position());
+		}
+		else
+		{
+			ByteBuffer from = region((int)(position / mRegionBytes)).duplicate();
+			from.position((int)(position % mRegionBytes));
+			from.limit(from.position() + n);
+			dst.put(from);
+		}
+
+		for(int i = n; i < mPageSize; i++)
+			dst.put((byte)0);
+	}
+
+	public void read(long position, byte[] dst, int off, int len) throws IOException
+	{
+		if(position < 0 || position + len > mLength)
+			throw new IOException("read past end: " + position + " + " + len);
+
+		if(mWritable)
+		{
+			readFully(position, ByteBuffer.wrap(dst, off, len));
+			return;
+		}
+
+		while(len > 0)
+		{
+			ByteBuffer from = region((int)(position / mRegionBytes)).duplicate();
+			from.position((int)(position % mRegionBytes));
+			int n = Math.min(len, from.remaining());
+			from.get(dst, off, n);
+
+			position += n;
+			off += n;
+			len -= n;
+		}
+	}
+
+	public void writePage(long page, ByteBuffer src) throws IOException
+	{
+		if(!mWritable)
+			throw new IOException("read-only");
+		if(page < 0 || page > pageCount())
+			throw new IOException("no page " + page);
+
+		long position = page * mPageSize;
+		ByteBuffer to = ByteBuffer.allocate(mPageSize);
+		int n = Math.min(src.remaining(), mPageSize);
+		ByteBuffer from = src.duplicate();
+		from.limit(from.position() + n);
+		to.put(from);
+		src.position(src.position() + n);
+		to.clear();
+
+		while(to.hasRemaining())
+			mChannel.write(to, position + to.position());
+
+		mLength = Math.max(mLength, position + mPageSize);
+	}
+
+	public void flush() throws IOException
+	{
+		if(mWritable)
+			mChannel.force(false);
+	}
+
+//	  Reads from the file channel until dst is full.
+	private void readFully(long position, ByteBuffer dst) throws IOException
+	{
+		while(dst.hasRemaining())
+		{
+			int n = mChannel.read(dst, position);
+			if(n < 0)
+				throw new IOException("read past end of file: " + position);
+			position += n;
+		}
+	}
+
+	public void close() throws IOException
+	{
+		try
+		{
+			flush();
+		}
+		finally
+		{
+			mRegions.clear();
+			mFile.close();
+		}
+	}
+}
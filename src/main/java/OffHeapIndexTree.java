@@ -0,0 +1,393 @@
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+//  A B+ tree from int keys to (offset, length) records whose leaves live off the Java heap, in an
+//  OffHeapLeafStore. Only the guide levels are Java objects, so the heap cost is a small fraction of the
+//  tree and garbage collection does not have to trace the leaves.
+//  The tree is used in one of two ways:
+//    put() records where a key's rows are in an external data file;
+//    appendRow() keeps the rows themselves off-heap, and each record then locates the key's rows,
+//    joined by '\n', in the store's row area.
+
+public class OffHeapIndexTree
+{
+	private static final int DEFAULT_ORDER = 64;
+	// Fills a 4 KB leaf page.
+	private static final int DEFAULT_LEAF_ORDER = 255;
+
+	private static final Charset ROW_CHARSET = Charset.forName("UTF-8");
+	private static final byte[] ROW_SEPARATOR = { '\n' };
+
+	private final OffHeapLeafStore mStore;
+	private final int mOrder;
+
+	// The root is a single leaf until the first split.
+	private GuideNode mRootNode = null;
+	private int mRootLeaf;
+	private int mFirstLeaf;
+
+	private int mSize = 0;
+	private int mGuideCount = 0;
+	private long mRowGarbageBytes = 0;
+
+//	  Creates a new OffHeapIndexTree with the default orders.
+	OffHeapIndexTree()
+	{
+		this(DEFAULT_ORDER, DEFAULT_LEAF_ORDER);
+	}
+
+//	  Creates a new OffHeapIndexTree.
+//	  @param order Order of the on-heap guide nodes.
+//	  @param leafOrder Order of the off-heap leaf nodes.
+//	  @throws IllegalArgumentException thrown if order < 3 or leafOrder < 2.
+	OffHeapIndexTree(int order, int leafOrder) throws IllegalArgumentException
+	{
+		if(order < 3)
+			throw new IllegalArgumentException();
+
+		mStore = new OffHeapLeafStore(leafOrder);
+		mOrder = order;
+
+		mRootLeaf = mFirstLeaf = mStore.allocate();
+	}
+
+//	  Returns the number of keys in this tree.
+	public int size()
+	{
+		return mSize;
+	}
+
+	public boolean containsKey(int key)
+	{
+		return mStore.search(findLeaf(key), key) >= 0;
+	}
+
+//	  Returns the offset recorded for the specified key, or -1 if the key is not present.
+	public long getOffset(int key)
+	{
+		int leaf = findLeaf(key);
+		int index = mStore.search(leaf, key);
+		return index < 0 ? -1 : mStore.offset(leaf, index);
+	}
+
+//	  Returns the length recorded for the specified key, or -1 if the key is not present.
+	public int getLength(int key)
+	{
+		int leaf = findLeaf(key);
+		int index = mStore.search(leaf, key);
+		return index < 0 ? -1 : mStore.length(leaf, index);
+	}
+
+//	  Returns the rows appended under the specified key, joined by '\n', or null if the key is not present.
+	public String getRows(int key)
+	{
+		int leaf = findLeaf(key);
+		int index = mStore.search(leaf, key);
+		return index < 0 ? null : readRows(mStore.offset(leaf, index), mStore.length(leaf, index));
+	}
+
+//	  Records the offset and length of the specified key's data, replacing any earlier record.
+	public void put(int key, long offset, int length)
+	{
+		int leaf = findLeaf(key);
+		int index = mStore.search(leaf, key);
+		if(index >= 0)
+			mStore.set(leaf, index, offset, length);
+		else
+			insert(key, offset, length);
+	}
+
+//	  Appends a row to the rows kept off-heap for the specified key.
+	public void appendRow(int key, String row)
+	{
+		byte[] bytes = row.getBytes(ROW_CHARSET);
+
+		int leaf = findLeaf(key);
+		int index = mStore.search(leaf, key);
+		if(index < 0)
+		{
+			insert(key, mStore.appendRow(bytes, 0, bytes.length), bytes.length);
+			return;
+		}
+
+		long offset = mStore.offset(leaf, index);
+		int length = mStore.length(leaf, index);
+
+		// A key's rows must stay contiguous. They are already at the end of the row area when the
+		// input is clustered by key; otherwise move them there and leave the old copy behind.
+		if(offset + length != mStore.rowEnd())
+		{
+			byte[] old = new byte[length];
+			mStore.readRow(offset, old, 0, length);
+			offset = mStore.appendRow(old, 0, length);
+			mRowGarbageBytes += length;
+		}
+
+		mStore.appendRow(ROW_SEPARATOR, 0, ROW_SEPARATOR.length);
+		mStore.appendRow(bytes, 0, bytes.length);
+		mStore.set(leaf, index, offset, length + ROW_SEPARATOR.length + bytes.length);
+	}
+
+	private String readRows(long offset, int length)
+	{
+		byte[] bytes = new byte[length];
+		mStore.readRow(offset, bytes, 0, length);
+		return new String(bytes, ROW_CHARSET);
+	}
+
+//	  Returns a cursor over all keys in ascending order.
+	public Cursor cursor()
+	{
+		return new Cursor();
+	}
+
+//	  Returns the direct memory allocated for leaves and rows, in bytes.
+	public long offHeapBytes()
+	{
+		return mStore.leafCapacityBytes() + mStore.rowCapacityBytes();
+	}
+
+//	  Returns an estimate of the heap taken by the guide nodes, in bytes.
+	public long guideHeapBytes()
+	{
+		// Object header and fields, plus an int[] and a reference array of order + 1 entries each.
+		return (long)mGuideCount * (32 + 2 * (16 + 4L * (mOrder + 1)));
+	}
+
+//	  Returns a description of the memory used by this tree.
+	public String memoryReport()
+	{
+		return "keys : " + mSize + "\n"
+			+ "leaves : " + mStore.leafCount() + " x " + mStore.leafOrder() + " records, "
+				+ mStore.leafUsedBytes() + " bytes used of " + mStore.leafCapacityBytes() + " off-heap\n"
+			+ "rows : " + mStore.rowEnd() + " bytes used (" + mRowGarbageBytes + " left behind by moved rows) of "
+				+ mStore.rowCapacityBytes() + " off-heap\n"
+			+ "guides : " + mGuideCount + " nodes, about " + guideHeapBytes() + " bytes on heap";
+	}
+
+	private int findLeaf(int key)
+	{
+		if(mRootNode == null)
+			return mRootLeaf;
+
+		GuideNode cur = mRootNode;
+		while(true)
+		{
+			int index = findGuideIndex(cur, key);
+			if(cur.leaves != null)
+				return cur.leaves[index];
+			cur = cur.children[index];
+		}
+	}
+
+//	  Returns the index to follow in a guide node for the specified key.
+	private static int findGuideIndex(GuideNode node, int key)
+	{
+		// keys[0] is only the lower bound, so search the separators from index 1.
+		int low = 1;
+		int high = node.count - 1;
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			if(key < node.keys[mid])
+				high = mid - 1;
+			else
+				low = mid + 1;
+		}
+
+		return low - 1;
+	}
+
+//	  Inserts a record for a key which is not yet present.
+	private void insert(int key, long offset, int length)
+	{
+		if(mRootNode == null)
+		{
+			int newLeaf = insertIntoLeaf(mRootLeaf, key, offset, length);
+			if(newLeaf >= 0)
+			{
+				mRootNode = new GuideNode(true);
+				mRootNode.leaves[0] = mRootLeaf;
+				mRootNode.keys[1] = mStore.key(newLeaf, 0);
+				mRootNode.leaves[1] = newLeaf;
+				mRootNode.count = 2;
+			}
+		}
+		else
+		{
+			GuideNode newGuide = mRootNode.insert(key, offset, length);
+			if(newGuide != null)
+			{
+				GuideNode newRoot = new GuideNode(false);
+				newRoot.children[0] = mRootNode;
+				newRoot.keys[1] = newGuide.keys[0];
+				newRoot.children[1] = newGuide;
+				newRoot.count = 2;
+
+				mRootNode = newRoot;
+			}
+		}
+
+		mSize++;
+	}
+
+//	  Inserts a record into a leaf, splitting the leaf first if it is full.
+//	  @return The id of the new right leaf if the leaf was split, else -1.
+	private int insertIntoLeaf(int leaf, int key, long offset, int length)
+	{
+		int newLeaf = -1;
+		if(mStore.count(leaf) == mStore.leafOrder())
+		{
+			newLeaf = mStore.split(leaf);
+			if(key >= mStore.key(newLeaf, 0))
+				leaf = newLeaf;
+		}
+
+		mStore.insert(leaf, -(mStore.search(leaf, key) + 1), key, offset, length);
+		return newLeaf;
+	}
+
+//	  A guide node kept on the heap. The lowest level of guide nodes points at leaf ids, the others at guide nodes.
+	private class GuideNode
+	{
+		public final int[] keys;
+		public final GuideNode[] children;
+		public final int[] leaves;
+		public int count = 0;
+
+		public GuideNode(boolean aboveLeaves)
+		{
+			keys = new int[mOrder + 1];
+			children = aboveLeaves ? null : new GuideNode[mOrder + 1];
+			leaves = aboveLeaves ? new int[mOrder + 1] : null;
+			mGuideCount++;
+		}
+
+//		  Inserts a record for a key which is not yet present below this Node.
+//		  @return A new right node if this node was split, else null.
+		public GuideNode insert(int key, long offset, int length)
+		{
+			int guideIndex = findGuideIndex(this, key);
+
+			// Recurse to child, and find out whether it split.
+			int newKey;
+			GuideNode newChild = null;
+			int newLeaf = -1;
+			if(leaves != null)
+			{
+				newLeaf = insertIntoLeaf(leaves[guideIndex], key, offset, length);
+				if(newLeaf < 0)
+					return null;
+				newKey = mStore.key(newLeaf, 0);
+			}
+			else
+			{
+				newChild = children[guideIndex].insert(key, offset, length);
+				if(newChild == null)
+					return null;
+				newKey = newChild.keys[0];
+			}
+
+			// Insert the new key and child after the followed child.
+			int insertIndex = guideIndex + 1;
+			System.arraycopy(keys, insertIndex, keys, insertIndex + 1, count - insertIndex);
+			keys[insertIndex] = newKey;
+			if(leaves != null)
+			{
+				System.arraycopy(leaves, insertIndex, leaves, insertIndex + 1, count - insertIndex);
+				leaves[insertIndex] = newLeaf;
+			}
+			else
+			{
+				System.arraycopy(children, insertIndex, children, insertIndex + 1, count - insertIndex);
+				children[insertIndex] = newChild;
+			}
+			count++;
+
+			// Do we need to split?
+			if(count <= mOrder)
+				return null;
+
+			GuideNode newGuide = new GuideNode(leaves != null);
+			int half = count / 2;
+			newGuide.count = count - half;
+			System.arraycopy(keys, half, newGuide.keys, 0, newGuide.count);
+			if(leaves != null)
+				System.arraycopy(leaves, half, newGuide.leaves, 0, newGuide.count);
+			else
+			{
+				System.arraycopy(children, half, newGuide.children, 0, newGuide.count);
+				Arrays.fill(children, half, count, null);
+			}
+			count = half;
+
+			return newGuide;
+		}
+	}
+
+//	  Walks the keys of an OffHeapIndexTree in ascending order along the leaf chain.
+	public class Cursor
+	{
+		private int curLeaf = mFirstLeaf;
+		private int curIndex = 0;
+
+		private int key;
+		private long offset;
+		private int length;
+
+		private Cursor()
+		{
+			skipEmpty();
+		}
+
+		private void skipEmpty()
+		{
+			while(curLeaf >= 0 && curIndex >= mStore.count(curLeaf))
+			{
+				curLeaf = mStore.next(curLeaf);
+				curIndex = 0;
+			}
+		}
+
+		public boolean hasNext()
+		{
+			return curLeaf >= 0;
+		}
+
+//		  Moves to the next key.
+		public void next()
+		{
+			if(!hasNext())
+				throw new NoSuchElementException();
+
+			key = mStore.key(curLeaf, curIndex);
+			offset = mStore.offset(curLeaf, curIndex);
+			length = mStore.length(curLeaf, curIndex);
+
+			curIndex++;
+			skipEmpty();
+		}
+
+		public int key()
+		{
+			return key;
+		}
+
+		public long offset()
+		{
+			return offset;
+		}
+
+		public int length()
+		{
+			return length;
+		}
+
+//		  Returns the rows appended under the current key, joined by '\n'.
+		public String rows()
+		{
+			return readRows(offset, length);
+		}
+	}
+}
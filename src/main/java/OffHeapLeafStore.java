@@ -0,0 +1,251 @@
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+
+//  Keeps B+ tree leaves, and optionally row bytes, in direct ByteBuffers outside the Java heap.
+//  A leaf is a fixed-size page: a header (entry count, id of the next leaf) followed by records of
+//  key (int), offset (long) and length (int), sorted by key. Pages are carved out of large chunks, so the
+//  garbage collector sees a handful of buffers no matter how many leaves there are.
+//  Rows are appended to a separate byte area; a record in row mode points into it.
+
+public class OffHeapLeafStore
+{
+	private static final int HEADER_BYTES = 8;
+	private static final int RECORD_BYTES = 16;
+	private static final int CHUNK_BYTES = 1 << 20;
+	private static final int ROW_CHUNK_BYTES = 4 << 20;
+
+	private static final int COUNT = 0;
+	private static final int NEXT = 4;
+	private static final int KEY = 0;
+	private static final int OFFSET = 4;
+	private static final int LENGTH = 12;
+
+	private final int mLeafOrder;
+	private final int mPageBytes;
+	private final int mPagesPerChunk;
+
+	private final ArrayList<ByteBuffer> mChunks = new ArrayList<ByteBuffer>();
+	private int mLeafCount = 0;
+
+	private final ArrayList<ByteBuffer> mRowChunks = new ArrayList<ByteBuffer>();
+	private long mRowEnd = 0;
+
+//	  Creates a new OffHeapLeafStore whose leaves hold up to leafOrder records.
+//	  @throws IllegalArgumentException thrown if leafOrder < 2 or a leaf would not fit in a chunk.
+	public OffHeapLeafStore(int leafOrder) throws IllegalArgumentException
+	{
+		if(leafOrder < 2 || HEADER_BYTES + (long)RECORD_BYTES * leafOrder > CHUNK_BYTES)
+			throw new IllegalArgumentException();
+
+		mLeafOrder = leafOrder;
+		mPageBytes = HEADER_BYTES + RECORD_BYTES * leafOrder;
+		mPagesPerChunk = CHUNK_BYTES / mPageBytes;
+	}
+
+	public int leafOrder()
+	{
+		return mLeafOrder;
+	}
+
+//	  Allocates a new, empty leaf and returns its id.
+	public int allocate()
+	{
+		int leaf = mLeafCount++;
+		if(leaf / mPagesPerChunk == mChunks.size())
+			mChunks.add(ByteBuffer.allocateDirect(mPagesPerChunk * mPageBytes));
+
+		ByteBuffer chunk = chunk(leaf);
+		chunk.putInt(base(leaf) + COUNT, 0);
+		chunk.putInt(base(leaf) + NEXT, -1);
+		return leaf;
+	}
+
+	private ByteBuffer chunk(int leaf)
+	{
+		return mChunks.get(leaf / mPagesPerChunk);
+	}
+
+	private int base(int leaf)
+	{
+		return (leaf % mPagesPerChunk) * mPageBytes;
+	}
+
+	private int record(int leaf, int index)
+	{
+		return base(leaf) + HEADER_BYTES + index * RECORD_BYTES;
+	}
+
+//	  Returns the number of records in the specified leaf.
+	public int count(int leaf)
+	{
+		return chunk(leaf).getInt(base(leaf) + COUNT);
+	}
+
+//	  Returns the id of the leaf after the specified one, or -1 if it is the last.
+	public int next(int leaf)
+	{
+		return chunk(leaf).getInt(base(leaf) + NEXT);
+	}
+
+	public int key(int leaf, int index)
+	{
+		return chunk(leaf).getInt(record(leaf, index) + KEY);
+	}
+
+	public long offset(int leaf, int index)
+	{
+		return chunk(leaf).getLong(record(leaf, index) + OFFSET);
+	}
+
+	public int length(int leaf, int index)
+	{
+		return chunk(leaf).getInt(record(leaf, index) + LENGTH);
+	}
+
+//	  Returns the index of the specified key in a leaf, or (-(insertion point) - 1) if it is absent.
+	public int search(int leaf, int key)
+	{
+		ByteBuffer chunk = chunk(leaf);
+		int first = record(leaf, 0);
+
+		int low = 0;
+		int high = chunk.getInt(base(leaf) + COUNT) - 1;
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int k = chunk.getInt(first + mid * RECORD_BYTES + KEY);
+			if(key < k)
+				high = mid - 1;
+			else if(key > k)
+				low = mid + 1;
+			else
+				return mid;
+		}
+
+		return -(low + 1);
+	}
+
+//	  Inserts a record at the specified index of a leaf, which must not be full.
+	public void insert(int leaf, int index, int key, long offset, int length)
+	{
+		ByteBuffer chunk = chunk(leaf);
+		int count = count(leaf);
+
+		// Shift the following records up by one, starting from the end.
+		for(int i = count - 1; i >= index; i--)
+			copyRecord(chunk, record(leaf, i), chunk, record(leaf, i + 1));
+
+		int at = record(leaf, index);
+		chunk.putInt(at + KEY, key);
+		chunk.putLong(at + OFFSET, offset);
+		chunk.putInt(at + LENGTH, length);
+		chunk.putInt(base(leaf) + COUNT, count + 1);
+	}
+
+//	  Replaces the offset and length of a record.
+	public void set(int leaf, int index, long offset, int length)
+	{
+		int at = record(leaf, index);
+		chunk(leaf).putLong(at + OFFSET, offset);
+		chunk(leaf).putInt(at + LENGTH, length);
+	}
+
+//	  Moves the upper half of a leaf's records into a new leaf linked after it.
+//	  @return The id of the new leaf.
+	public int split(int leaf)
+	{
+		int newLeaf = allocate();
+
+		ByteBuffer from = chunk(leaf);
+		ByteBuffer to = chunk(newLeaf);
+		int count = count(leaf);
+		int half = count / 2;
+
+		for(int i = half; i < count; i++)
+			copyRecord(from, record(leaf, i), to, record(newLeaf, i - half));
+
+		to.putInt(base(newLeaf) + COUNT, count - half);
+		to.putInt(base(newLeaf) + NEXT, next(leaf));
+		from.putInt(base(leaf) + COUNT, half);
+		from.putInt(base(leaf) + NEXT, newLeaf);
+
+		return newLeaf;
+	}
+
+	private static void copyRecord(ByteBuffer from, int fromPos, ByteBuffer to, int toPos)
+	{
+		to.putLong(toPos, from.getLong(fromPos));
+		to.putLong(toPos + 8, from.getLong(fromPos + 8));
+	}
+
+//	  Appends bytes to the row area.
+//	  @return The position of the first appended byte.
+	public long appendRow(byte[] bytes, int off, int len)
+	{
+		long position = mRowEnd;
+		while(len > 0)
+		{
+			int chunkIndex = (int)(mRowEnd / ROW_CHUNK_BYTES);
+			if(chunkIndex == mRowChunks.size())
+				mRowChunks.add(ByteBuffer.allocateDirect(ROW_CHUNK_BYTES));
+
+			// Copy through a duplicate so that concurrent readers' positions are never disturbed.
+			ByteBuffer chunk = mRowChunks.get(chunkIndex).duplicate();
+			chunk.position((int)(mRowEnd % ROW_CHUNK_BYTES));
+			int n = Math.min(len, chunk.remaining());
+			chunk.put(bytes, off, n);
+
+			off += n;
+			len -= n;
+			mRowEnd += n;
+		}
+
+		return position;
+	}
+
+//	  Copies len bytes of the row area, starting at position, into dst.
+	public void readRow(long position, byte[] dst, int off, int len)
+	{
+		while(len > 0)
+		{
+			ByteBuffer chunk = mRowChunks.get((int)(position / ROW_CHUNK_BYTES)).duplicate();
+			chunk.position((int)(position % ROW_CHUNK_BYTES));
+			int n = Math.min(len, chunk.remaining());
+			chunk.get(dst, off, n);
+
+			off += n;
+			len -= n;
+			position += n;
+		}
+	}
+
+//	  Returns the end of the row area, which is where the next appended row will start.
+	public long rowEnd()
+	{
+		return mRowEnd;
+	}
+
+//	  Returns the number of leaves allocated so far.
+	public int leafCount()
+	{
+		return mLeafCount;
+	}
+
+//	  Returns the bytes of direct memory allocated for leaves.
+	public long leafCapacityBytes()
+	{
+		return (long)mChunks.size() * mPagesPerChunk * mPageBytes;
+	}
+
+//	  Returns the bytes of leaf pages in use, headers and unused record slots included.
+	public long leafUsedBytes()
+	{
+		return (long)mLeafCount * mPageBytes;
+	}
+
+//	  Returns the bytes of direct memory allocated for rows.
+	public long rowCapacityBytes()
+	{
+		return (long)mRowChunks.size() * ROW_CHUNK_BYTES;
+	}
+}
@@ -0,0 +1,40 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+//  Storage for a file of fixed-size pages, numbered from 0: the clustered data file searchData reads rows
+//  from, and the index files IndexFile writes and PagedIndex searches in place. Callers only see this
+//  interface, so the same code reads pages on the Java heap (HeapPageStore), in a memory-mapped local file
+//  (MappedFilePageStore) or in an HDFS file (HdfsPageStore), and the storage can be chosen per deployment.
+//  Only the index tree has a page form: an IntBPlusTree is written out as guide and leaf pages and searched
+//  from them. The key-to-rows trees (BPlusTree, IndexBPlusTree, DataBPlusTree) hold their nodes as objects on
+//  the Java heap.
+//  Stores are not safe for concurrent writers.
+
+public interface PageStore extends Closeable
+{
+//	  Returns the size of every page, in bytes.
+	int pageSize();
+
+//	  Returns the number of pages, counting a partial last page.
+	long pageCount();
+
+//	  Returns the number of bytes stored. Only a store opened on an existing file can end in a partial page.
+	long length();
+
+//	  Copies a page to dst, from its position on. A partial last page is padded with zeros.
+//	  @throws IOException thrown if the page does not exist or cannot be read.
+	void readPage(long page, ByteBuffer dst) throws IOException;
+
+//	  Copies len bytes, starting at the specified byte position, into dst. The bytes may span pages.
+//	  @throws IOException thrown if the range ends past length() or cannot be read.
+	void read(long position, byte[] dst, int off, int len) throws IOException;
+
+//	  Writes the remaining bytes of src, at most pageSize(), as the specified page; a short page is padded with
+//	  zeros. Passing pageCount() appends a page.
+//	  @throws IOException thrown if page > pageCount(), or the store is read-only or cannot overwrite the page.
+	void writePage(long page, ByteBuffer src) throws IOException;
+
+//	  Pushes written pages to the underlying storage.
+	void flush() throws IOException;
+}
@@ -0,0 +1,205 @@
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+//  A read-only index file, searched in place in the PageStore that holds it, whichever kind of store it is.
+//  Nothing is read onto the Java heap when the index is opened, beyond its header and footer, so a query
+//  process can answer lookups right after start. A lookup descends the guide pages from the root to a leaf
+//  page by binary search and then binary-searches the leaf page's records; its result is the position of the
+//  record in the store, which the accessors decode without creating objects.
+//  A local file opened for reading is searched through its memory mapping, and every process that opens the
+//  same file shares its pages in the OS page cache. Any other store is read a page at a time into one page
+//  buffer, so an index over it is not safe for concurrent use.
+
+public class PagedIndex implements Closeable
+{
+	private final PageStore mStore;
+	// mStore, if it is searched through its memory mapping, else null.
+	private final MappedFilePageStore mMappedStore;
+	private final IndexFile.Footer mFooter;
+	private final int mPageSize;
+
+	// The page last read from a store that is not mapped, and its number, or -1.
+	private final ByteBuffer mPage;
+	private long mPageNumber = -1;
+
+//	  Opens a local index file written by IndexFile.write(), through a memory mapping.
+//	  @throws IOException thrown if the file is not an index file or cannot be mapped.
+	public static PagedIndex open(File file) throws IOException
+	{
+		ByteBuffer header = ByteBuffer.allocate(IndexFile.HEADER_BYTES);
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			raf.readFully(header.array());
+		}
+		finally
+		{
+			raf.close();
+		}
+
+		MappedFilePageStore store = MappedFilePageStore.open(file, IndexFile.pageSize(header));
+		try
+		{
+			return open(store);
+		}
+		catch(IOException e)
+		{
+			store.close();
+			throw e;
+		}
+	}
+
+//	  Opens the index file written by IndexFile.write() to the specified store, which the index closes when it
+//	  is closed.
+//	  @throws IOException thrown if the store does not hold an index file or cannot be read.
+	public static PagedIndex open(PageStore store) throws IOException
+	{
+		return new PagedIndex(store, IndexFile.readFooter(store));
+	}
+
+	private PagedIndex(PageStore store, IndexFile.Footer footer)
+	{
+		mStore = store;
+		mFooter = footer;
+		mPageSize = store.pageSize();
+
+		if(store instanceof MappedFilePageStore && ((MappedFilePageStore)store).isMapped())
+		{
+			mMappedStore = (MappedFilePageStore)store;
+			mPage = null;
+		}
+		else
+		{
+			mMappedStore = null;
+			mPage = ByteBuffer.allocate(mPageSize);
+		}
+	}
+
+	public IndexFile.Footer footer()
+	{
+		return mFooter;
+	}
+
+//	  Returns the number of records in the index.
+	public long size()
+	{
+		return mFooter.recordCount;
+	}
+
+//	  Returns the position in the store of a record of the specified key, or -1 if the key is not present.
+	public long find(int key) throws IOException
+	{
+		long position = floor(key);
+		if(position < 0 || key(position) != key)
+			return -1;
+
+		return position;
+	}
+
+//	  Returns the position in the store of a record of the greatest key less than or equal to the specified key,
+//	  or -1 if there is no such key.
+	public long floor(int key) throws IOException
+	{
+		long position = (long)mFooter.rootPage * mPageSize;
+
+		for(int level = mFooter.height; level > 1; level--)
+		{
+			ByteBuffer buffer = bufferOf(position);
+			int base = bufferPosition(position);
+
+			// The last child whose lowest key is not above the key.
+			int low = 0;
+			int high = IndexFile.count(buffer, base) - 1;
+			if(IndexFile.guideKey(buffer, base, 0) > key)
+				return -1;
+			while(low < high)
+			{
+				int middle = (low + high + 1) >>> 1;
+				if(IndexFile.guideKey(buffer, base, middle) <= key)
+					low = middle;
+				else
+					high = middle - 1;
+			}
+
+			position = (long)IndexFile.guideChild(buffer, base, low) * mPageSize;
+		}
+
+		ByteBuffer buffer = bufferOf(position);
+		int base = bufferPosition(position);
+
+		int low = 0;
+		int high = IndexFile.count(buffer, base) - 1;
+		while(low <= high)
+		{
+			int middle = (low + high) >>> 1;
+			int middleKey = IndexRecord.key(buffer, base + IndexFile.recordPosition(middle));
+			if(middleKey < key)
+				low = middle + 1;
+			else if(middleKey > key)
+				high = middle - 1;
+			else
+				return position + IndexFile.recordPosition(middle);
+		}
+
+		// Every leaf page starts with the key its parent holds for it, so the greatest smaller key is on this page.
+		return high < 0 ? -1 : position + IndexFile.recordPosition(high);
+	}
+
+//	  Returns the key of the record at the specified position.
+	public int key(long position) throws IOException
+	{
+		return IndexRecord.key(bufferOf(position), bufferPosition(position));
+	}
+
+//	  Returns the data file id of the record at the specified position, as returned by find().
+	public int fileId(long position) throws IOException
+	{
+		return IndexRecord.fileId(bufferOf(position), bufferPosition(position));
+	}
+
+//	  Returns the byte offset in the data file of the record at the specified position.
+	public long offset(long position) throws IOException
+	{
+		return IndexRecord.offset(bufferOf(position), bufferPosition(position));
+	}
+
+//	  Returns the length in bytes of the rows of the record at the specified position.
+	public int length(long position) throws IOException
+	{
+		return IndexRecord.length(bufferOf(position), bufferPosition(position));
+	}
+
+//	  Returns the buffer holding the byte at the specified position of the store, at bufferPosition(position).
+	private ByteBuffer bufferOf(long position) throws IOException
+	{
+		if(mMappedStore != null)
+			return mMappedStore.regionOf(position);
+
+		long page = position / mPageSize;
+		if(page != mPageNumber)
+		{
+			mPageNumber = -1;
+			mPage.clear();
+			mStore.readPage(page, mPage);
+			mPageNumber = page;
+		}
+
+		return mPage;
+	}
+
+	private int bufferPosition(long position)
+	{
+		if(mMappedStore != null)
+			return mMappedStore.regionPosition(position);
+
+		return (int)(position % mPageSize);
+	}
+
+	public void close() throws IOException
+	{
+		mStore.close();
+	}
+}
@@ -0,0 +1,102 @@
+import java.util.*;
+
+//  The values mapped to one key in a B+ tree leaf.
+//  Most keys have only a few values (a lineitem order has 1 to 7 rows), so the first two are kept in fields
+//  of the list itself; a third value moves them all into an array chunk, which then grows by half.
+//  Renders, compares and hashes like an ArrayList holding the same values.
+
+public class PostingList<V> extends AbstractList<V> implements RandomAccess
+{
+	private static final int INLINE_CAPACITY = 2;
+	private static final int FIRST_CHUNK_CAPACITY = 4;
+
+	private Object mValue0;
+	private Object mValue1;
+	private Object[] mChunk;
+	private int mSize = 0;
+
+//	  Creates an empty PostingList.
+	public PostingList()
+	{
+	}
+
+//	  Creates a PostingList holding the specified value.
+	public PostingList(V value)
+	{
+		mValue0 = value;
+		mSize = 1;
+	}
+
+//	  Creates a PostingList holding the values of the specified list, in order.
+	public PostingList(List<? extends V> values)
+	{
+		if(values.size() > INLINE_CAPACITY)
+		{
+			mChunk = values.toArray(new Object[Math.max(FIRST_CHUNK_CAPACITY, values.size())]);
+			mSize = values.size();
+		}
+		else
+		{
+			for(V value : values)
+				add(value);
+		}
+	}
+
+	public int size()
+	{
+		return mSize;
+	}
+
+	public V get(int index)
+	{
+		if(index < 0 || index >= mSize)
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + mSize);
+
+		if(mChunk != null)
+			return (V)mChunk[index];
+		else
+			return (V)(index == 0 ? mValue0 : mValue1);
+	}
+
+//	  Appends the specified value to the end of this list.
+	public boolean add(V value)
+	{
+		if(mChunk != null)
+		{
+			if(mSize == mChunk.length)
+				mChunk = Arrays.copyOf(mChunk, mSize + (mSize >> 1));
+			mChunk[mSize] = value;
+		}
+		else if(mSize == 0)
+		{
+			mValue0 = value;
+		}
+		else if(mSize == 1)
+		{
+			mValue1 = value;
+		}
+		else
+		{
+			// Out of inline slots: move everything into a chunk.
+			mChunk = new Object[FIRST_CHUNK_CAPACITY];
+			mChunk[0] = mValue0;
+			mChunk[1] = mValue1;
+			mChunk[2] = value;
+			mValue0 = mValue1 = null;
+		}
+
+		mSize++;
+		modCount++;
+		return true;
+	}
+
+//	  Returns an estimate of the heap taken by this list, not counting the values, in bytes.
+	public long heapBytes()
+	{
+		// modCount, size and the three references.
+		long bytes = TreeStats.objectBytes(4 + 4 + 4 + 4 + 4);
+		if(mChunk != null)
+			bytes += TreeStats.arrayBytes(mChunk.length, 4);
+		return bytes;
+	}
+}
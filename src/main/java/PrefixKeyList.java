@@ -0,0 +1,194 @@
+import java.util.*;
+
+//  A sorted list of String keys stored as one prefix shared by every key plus the remaining suffixes, packed
+//  back to back in a single char array. Index keys built from sorted or clustered input share long prefixes,
+//  and no String object is kept per key. Keys may not be null.
+
+public class PrefixKeyList extends AbstractList<String> implements RandomAccess, CompressedKeys
+{
+	private String mPrefix = "";
+	private char[] mChars;
+	// mEnds[i] is the end of suffix i in mChars; suffix i starts where suffix i - 1 ends.
+	private int[] mEnds;
+	private int mSize = 0;
+
+//	  Creates an empty PrefixKeyList with room for the specified number of keys.
+	public PrefixKeyList(int capacity)
+	{
+		mEnds = new int[Math.max(capacity, 1)];
+		mChars = new char[mEnds.length * 4];
+	}
+
+	public int size()
+	{
+		return mSize;
+	}
+
+	public String get(int index)
+	{
+		checkIndex(index, mSize);
+
+		int start = start(index);
+		return new StringBuilder(mPrefix.length() + mEnds[index] - start)
+			.append(mPrefix).append(mChars, start, mEnds[index] - start).toString();
+	}
+
+	private int start(int index)
+	{
+		return index == 0 ? 0 : mEnds[index - 1];
+	}
+
+//	  Inserts the specified key at the specified position, which must keep the list sorted.
+	public void add(int index, String key)
+	{
+		checkIndex(index, mSize + 1);
+
+		if(mSize == 0)
+		{
+			mPrefix = key;
+		}
+		else if(!key.startsWith(mPrefix))
+		{
+			int common = 0;
+			while(common < key.length() && key.charAt(common) == mPrefix.charAt(common))
+				common++;
+			shortenPrefix(common);
+		}
+
+		int length = key.length() - mPrefix.length();
+		int at = start(index);
+		int used = mSize == 0 ? 0 : mEnds[mSize - 1];
+
+		if(used + length > mChars.length)
+			mChars = Arrays.copyOf(mChars, Math.max(used + length, mChars.length + (mChars.length >> 1)));
+		if(mSize == mEnds.length)
+			mEnds = Arrays.copyOf(mEnds, mSize + Math.max(1, mSize >> 1));
+
+		System.arraycopy(mChars, at, mChars, at + length, used - at);
+		key.getChars(mPrefix.length(), key.length(), mChars, at);
+
+		System.arraycopy(mEnds, index, mEnds, index + 1, mSize - index);
+		mEnds[index] = at + length;
+		for(int i = index + 1; i <= mSize; i++)
+			mEnds[i] += length;
+
+		mSize++;
+		modCount++;
+	}
+
+	public String remove(int index)
+	{
+		String key = get(index);
+
+		int at = start(index);
+		int length = mEnds[index] - at;
+		int used = mEnds[mSize - 1];
+
+		System.arraycopy(mChars, at + length, mChars, at, used - at - length);
+		System.arraycopy(mEnds, index + 1, mEnds, index, mSize - index - 1);
+		mSize--;
+		for(int i = index; i < mSize; i++)
+			mEnds[i] -= length;
+
+		modCount++;
+		return key;
+	}
+
+	public String set(int index, String key)
+	{
+		String old = remove(index);
+		add(index, key);
+		return old;
+	}
+
+	public int search(Object key)
+	{
+		String k = (String)key;
+		int prefixLength = mPrefix.length();
+
+		// Every stored key starts with the prefix, so a key that leaves it sorts before or after all of them.
+		int n = Math.min(k.length(), prefixLength);
+		for(int i = 0; i < n; i++)
+		{
+			char c = k.charAt(i);
+			char p = mPrefix.charAt(i);
+			if(c != p)
+				return c < p ? -1 : -(mSize + 1);
+		}
+		if(k.length() < prefixLength)
+			return -1;
+
+		int low = 0;
+		int high = mSize - 1;
+		while(low <= high)
+		{
+			int mid = (low + high) >>> 1;
+			int c = compareSuffix(k, prefixLength, mid);
+			if(c < 0)
+				high = mid - 1;
+			else if(c > 0)
+				low = mid + 1;
+			else
+				return mid;
+		}
+
+		return -(low + 1);
+	}
+
+	public long heapBytes()
+	{
+		// modCount, size and the three references.
+		return TreeStats.objectBytes(4 + 4 + 4 + 4 + 4) + TreeStats.valueBytes(mPrefix)
+			+ TreeStats.arrayBytes(mChars.length, 2) + TreeStats.arrayBytes(mEnds.length, 4);
+	}
+	
+//	  Compares key, from position from on, with suffix index, the same way String.compareTo would.
+	private int compareSuffix(String key, int from, int index)
+	{
+		int start = start(index);
+		int length = mEnds[index] - start;
+		int keyLength = key.length() - from;
+
+		int n = Math.min(keyLength, length);
+		for(int i = 0; i < n; i++)
+		{
+			char c = key.charAt(from + i);
+			char s = mChars[start + i];
+			if(c != s)
+				return c - s;
+		}
+
+		return keyLength - length;
+	}
+
+//	  Moves the end of the prefix back into the front of every suffix.
+	private void shortenPrefix(int prefixLength)
+	{
+		String moved = mPrefix.substring(prefixLength);
+		int extra = moved.length();
+		int used = mEnds[mSize - 1];
+
+		char[] chars = new char[Math.max(mChars.length, used + extra * mSize + extra)];
+		int from = 0;
+		int to = 0;
+		for(int i = 0; i < mSize; i++)
+		{
+			int length = mEnds[i] - from;
+			moved.getChars(0, extra, chars, to);
+			to += extra;
+			System.arraycopy(mChars, from, chars, to, length);
+			to += length;
+			from = mEnds[i];
+			mEnds[i] = to;
+		}
+
+		mChars = chars;
+		mPrefix = mPrefix.substring(0, prefixLength);
+	}
+
+	private static void checkIndex(int index, int limit)
+	{
+		if(index < 0 || index >= limit)
+			throw new IndexOutOfBoundsException("Index: " + index);
+	}
+}
@@ -0,0 +1,314 @@
+import java.util.*;
+
+//  The shape of a B+ tree and an estimate of the heap it retains, as collected by the trees' stats() methods.
+//  Node counts, fill and duplicate fan-in are exact. The heap estimate assumes a 64-bit JVM with compressed
+//  references and compact strings. Node structure is measured in every node; keys and values are measured
+//  in a sample of the leaves and scaled up to the whole tree. The key objects guide nodes refer to are not
+//  counted, as most of them are also held by a leaf.
+//  The trees only walk their nodes and describe each one's fields; the accounting is done here.
+
+public class TreeStats
+{
+	private static final int OBJECT_HEADER_BYTES = 12;
+	private static final int ARRAY_HEADER_BYTES = 16;
+	private static final int REFERENCE_BYTES = 4;
+
+	private final int mOrder;
+	private final int mLeafOrder;
+	private final double mSampleFraction;
+	private final int mSampleStride;
+
+	private final ArrayList<Integer> mNodesPerLevel = new ArrayList<Integer>();
+	private int mHeight = 0;
+
+	private int mGuideCount = 0;
+	private long mGuideChildren = 0;
+	private double mMinGuideFill = Double.NaN;
+
+	private int mLeafCount = 0;
+	private double mMinLeafFill = Double.NaN;
+
+	private long mKeyCount = 0;
+	private long mValueCount = 0;
+	private long mDuplicateKeyCount = 0;
+	private int mMaxFanIn = 0;
+
+	private long mNodeBytes = 0;
+	private long mSampledKeys = 0;
+	private long mSampledEntryBytes = 0;
+
+//	  Creates an empty TreeStats for a tree of the specified orders.
+//	  @param sampleFraction Fraction of the leaves whose keys and values are measured, in (0, 1].
+//	  @throws IllegalArgumentException thrown if sampleFraction is not in (0, 1].
+	TreeStats(int order, int leafOrder, double sampleFraction) throws IllegalArgumentException
+	{
+		if(!(sampleFraction > 0 && sampleFraction <= 1))
+			throw new IllegalArgumentException();
+
+		mOrder = order;
+		mLeafOrder = leafOrder;
+		mSampleFraction = sampleFraction;
+		mSampleStride = (int)Math.max(1, Math.round(1 / sampleFraction));
+	}
+
+//	  Returns the bytes taken by fields of the specified numbers of references and ints.
+	static int fieldBytes(int references, int ints)
+	{
+		return references * REFERENCE_BYTES + ints * 4;
+	}
+
+//	  Records a guide node.
+//	  @param level Depth of the node, 0 being the root.
+//	  @param fieldBytes Bytes of the node object's own fields, as given by fieldBytes().
+	void addGuide(int level, List<?> keys, int children, int fieldBytes)
+	{
+		addNode(level, objectBytes(fieldBytes) + keyListBytes(keys, mOrder) + arrayListBytes(children, mOrder));
+
+		mGuideCount++;
+		mGuideChildren += children;
+
+		// The root may hold as few as two children, so it is left out of the minimum.
+		if(level > 0)
+			mMinGuideFill = min(mMinGuideFill, (double)children / mOrder);
+	}
+
+//	  Records a leaf node and its keys and values.
+//	  @param level Depth of the node, 0 being the root.
+//	  @param values The value lists of the leaf, in the order of its keys.
+//	  @param fieldBytes Bytes of the node object's own fields, as given by fieldBytes().
+	void addLeaf(int level, List<?> keys, List<? extends PostingList<?>> values, int fieldBytes)
+	{
+		addNode(level, objectBytes(fieldBytes) + keyListBytes(keys, mLeafOrder) + arrayListBytes(values.size(), mLeafOrder));
+
+		boolean sampled = mLeafCount % mSampleStride == 0;
+		boolean keyObjects = !(keys instanceof CompressedKeys);
+
+		long entryBytes = 0;
+		for(int i = 0; i < keys.size(); i++)
+		{
+			PostingList<?> valueList = values.get(i);
+			int valueCount = valueList.size();
+
+			mKeyCount++;
+			mValueCount += valueCount;
+			if(valueCount > 1)
+				mDuplicateKeyCount++;
+			mMaxFanIn = Math.max(mMaxFanIn, valueCount);
+
+			if(sampled)
+			{
+				if(keyObjects)
+					entryBytes += valueBytes(keys.get(i));
+				entryBytes += valueList.heapBytes();
+				for(Object value : valueList)
+					entryBytes += valueBytes(value);
+			}
+		}
+
+		if(level > 0)
+			mMinLeafFill = min(mMinLeafFill, (double)keys.size() / mLeafOrder);
+
+		if(sampled)
+		{
+			mSampledKeys += keys.size();
+			mSampledEntryBytes += entryBytes;
+		}
+
+		mLeafCount++;
+	}
+
+	private void addNode(int level, long nodeBytes)
+	{
+		while(mNodesPerLevel.size() <= level)
+			mNodesPerLevel.add(0);
+		mNodesPerLevel.set(level, mNodesPerLevel.get(level) + 1);
+		mHeight = mNodesPerLevel.size();
+
+		mNodeBytes += nodeBytes;
+	}
+
+	private static double min(double current, double fill)
+	{
+		return Double.isNaN(current) ? fill : Math.min(current, fill);
+	}
+
+//	  Returns the number of levels, counting the leaves.
+	public int height()
+	{
+		return mHeight;
+	}
+
+//	  Returns the number of nodes on each level, the root's first.
+	public int[] nodesPerLevel()
+	{
+		int[] nodes = new int[mNodesPerLevel.size()];
+		for(int i = 0; i < nodes.length; i++)
+			nodes[i] = mNodesPerLevel.get(i);
+		return nodes;
+	}
+
+	public int nodeCount()
+	{
+		return mGuideCount + mLeafCount;
+	}
+
+	public int guideCount()
+	{
+		return mGuideCount;
+	}
+
+	public int leafCount()
+	{
+		return mLeafCount;
+	}
+
+//	  Returns the number of distinct keys.
+	public long keyCount()
+	{
+		return mKeyCount;
+	}
+
+//	  Returns the number of values, duplicates included.
+	public long valueCount()
+	{
+		return mValueCount;
+	}
+
+//	  Returns the average number of keys per leaf as a fraction of the leaf order.
+	public double averageLeafFill()
+	{
+		return mLeafCount == 0 ? Double.NaN : (double)mKeyCount / mLeafCount / mLeafOrder;
+	}
+
+//	  Returns the fill of the emptiest leaf other than a root leaf, or NaN if there is none.
+	public double minLeafFill()
+	{
+		return mMinLeafFill;
+	}
+
+//	  Returns the average number of children per guide node as a fraction of the order, or NaN if there are no guide nodes.
+	public double averageGuideFill()
+	{
+		return mGuideCount == 0 ? Double.NaN : (double)mGuideChildren / mGuideCount / mOrder;
+	}
+
+//	  Returns the fill of the emptiest guide node other than the root, or NaN if there is none.
+	public double minGuideFill()
+	{
+		return mMinGuideFill;
+	}
+
+//	  Returns the average number of values per key.
+	public double averageFanIn()
+	{
+		return mKeyCount == 0 ? 0 : (double)mValueCount / mKeyCount;
+	}
+
+//	  Returns the largest number of values mapped to one key.
+	public int maxFanIn()
+	{
+		return mMaxFanIn;
+	}
+
+//	  Returns the number of keys mapped to more than one value.
+	public long duplicateKeyCount()
+	{
+		return mDuplicateKeyCount;
+	}
+
+//	  Returns the fraction of leaves whose keys and values were measured.
+	public double sampleFraction()
+	{
+		return mSampleFraction;
+	}
+
+//	  Returns the estimated heap retained by the tree: its nodes, keys and values.
+	public long estimatedHeapBytes()
+	{
+		if(mSampledKeys == 0)
+			return mNodeBytes;
+
+		return mNodeBytes + Math.round((double)mSampledEntryBytes * mKeyCount / mSampledKeys);
+	}
+
+//	  Returns the estimated heap retained per key.
+	public double bytesPerKey()
+	{
+		return mKeyCount == 0 ? 0 : (double)estimatedHeapBytes() / mKeyCount;
+	}
+
+	public String toString()
+	{
+		return "height : " + mHeight + ", nodes per level : " + Arrays.toString(nodesPerLevel()) + "\n"
+			+ "order : " + mOrder + ", leaf order : " + mLeafOrder + "\n"
+			+ "leaf fill : average " + percent(averageLeafFill()) + ", minimum " + percent(minLeafFill()) + "\n"
+			+ "guide fill : average " + percent(averageGuideFill()) + ", minimum " + percent(minGuideFill()) + "\n"
+			+ "keys : " + mKeyCount + ", values : " + mValueCount + ", duplicate keys : " + mDuplicateKeyCount
+				+ ", fan-in : average " + String.format("%.2f", averageFanIn()) + ", maximum " + mMaxFanIn + "\n"
+			+ "estimated heap : " + estimatedHeapBytes() + " bytes, " + String.format("%.1f", bytesPerKey())
+				+ " per key (" + percent(mSampleFraction) + " of leaves sampled)";
+	}
+
+	private static String percent(double fraction)
+	{
+		return Double.isNaN(fraction) ? "-" : String.format("%.1f%%", fraction * 100);
+	}
+
+//	  Rounds up to the 8-byte alignment of heap objects.
+	private static long align(long bytes)
+	{
+		return (bytes + 7) & ~7L;
+	}
+
+//	  Returns the heap taken by an object with the specified bytes of fields.
+	static long objectBytes(int fieldBytes)
+	{
+		return align(OBJECT_HEADER_BYTES + fieldBytes);
+	}
+
+//	  Returns the heap taken by an array.
+	static long arrayBytes(int length, int elementBytes)
+	{
+		return align(ARRAY_HEADER_BYTES + (long)length * elementBytes);
+	}
+
+//	  Returns the heap taken by an ArrayList, not counting its elements. Node lists are created with room for
+//	  a node's order, so that is taken as the capacity unless the list holds more.
+	private static long arrayListBytes(int size, int capacity)
+	{
+		// size, modCount and the element array.
+		return objectBytes(4 + 4 + REFERENCE_BYTES) + arrayBytes(Math.max(size, capacity), REFERENCE_BYTES);
+	}
+
+//	  Returns the heap taken by a leaf's or guide node's key list, not counting key objects it refers to.
+	private static long keyListBytes(List<?> keys, int capacity)
+	{
+		if(keys instanceof CompressedKeys)
+			return ((CompressedKeys)keys).heapBytes();
+		else
+			return arrayListBytes(keys.size(), capacity);
+	}
+
+//	  Returns the heap taken by a key or value object.
+	static long valueBytes(Object value)
+	{
+		if(value instanceof String)
+		{
+			// hash, coder, hashIsZero and the byte array; Latin-1 strings take a byte per char.
+			return objectBytes(4 + 1 + 1 + REFERENCE_BYTES) + arrayBytes(((String)value).length(), 1);
+		}
+		else if(value instanceof Integer)
+		{
+			return objectBytes(4);
+		}
+		else if(value instanceof Long)
+		{
+			return objectBytes(8);
+		}
+		else
+		{
+			// Unknown: at least a header and a field.
+			return objectBytes(REFERENCE_BYTES);
+		}
+	}
+}